@@ -0,0 +1,161 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks the set primitives of UtilImpl, which the dealer calls on every claim and every deal.
+ * Run with the "jmh" maven profile, see pom.xml. The inputs are random tables (and decks), rotated between the
+ * invocations so the results cannot be constant folded.
+ * With complementTable=true, findSets takes the complements from a ComplementTable (built into a temporary directory)
+ * instead of computing them, where the deck allows it (3 values per feature). For the large decks, run e.g. with
+ * -p featureSize=3 -p featureCount=4,8.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    @Param({"4", "5"})
+    public int featureCount;
+
+    @Param({"3", "4"})
+    public int featureSize;
+
+    @Param({"12"})
+    public int tableSize;
+
+    @Param({"false", "true"})
+    public boolean complementTable;
+
+    private Path tablesDir;
+
+    private Util util;
+    private int[][] sets;
+    private int[][] nonSets;
+    private int[][] tables;
+    private List<List<Integer>> tableLists;
+    private List<Integer> deck;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getLogger("UtilBenchmark");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        ComplementTable complements = null;
+        if (complementTable && ComplementTable.fits(config)) {
+            try {
+                tablesDir = Files.createTempDirectory("complements");
+                complements = ComplementTable.open(tablesDir.resolve("complements.bin"), config, logger);
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot build the complement table", e);
+            }
+        }
+        util = new UtilImpl(config, complements);
+
+        Random random = new Random(42);
+        sets = new int[INPUTS][];
+        nonSets = new int[INPUTS][];
+        tables = new int[INPUTS][];
+        tableLists = new ArrayList<>(INPUTS);
+        deck = new ArrayList<>(config.deckSize);
+        for (int card = 0; card < config.deckSize; card++)
+            deck.add(card);
+
+        for (int i = 0; i < INPUTS; i++) {
+            // a set: each feature is the same on all the cards or different on all of them (at least one is)
+            int[] set = new int[featureSize];
+            int differentFeature = random.nextInt(featureCount);
+            for (int weight = 1, f = 0; f < featureCount; f++, weight *= featureSize) {
+                boolean different = f == differentFeature || random.nextBoolean();
+                int same = random.nextInt(featureSize);
+                int offset = random.nextInt(featureSize);
+                for (int c = 0; c < featureSize; c++)
+                    set[c] += (different ? (c + offset) % featureSize : same) * weight;
+            }
+            sets[i] = set;
+
+            int[] nonSet = set.clone();
+            nonSet[0] = (nonSet[0] + 1) % config.deckSize;
+            nonSets[i] = nonSet;
+
+            int[] table = random.ints(0, config.deckSize).distinct().limit(Math.min(tableSize, config.deckSize)).toArray();
+            tables[i] = table;
+            List<Integer> tableList = new ArrayList<>(table.length);
+            for (int card : table)
+                tableList.add(card);
+            tableLists.add(tableList);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (tablesDir == null) return;
+        Files.deleteIfExists(tablesDir.resolve("complements.bin"));
+        Files.delete(tablesDir);
+    }
+
+    private int next() {
+        return next = (next + 1) & (INPUTS - 1);
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(sets[next()]);
+    }
+
+    @Benchmark
+    public boolean testNonSet() {
+        return util.testSet(nonSets[next()]);
+    }
+
+    @Benchmark
+    public List<int[]> findFirstSetOnTable() {
+        return util.findSets(tableLists.get(next()), 1);
+    }
+
+    @Benchmark
+    public List<int[]> findAllSetsOnTable() {
+        return util.findSets(tableLists.get(next()), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<int[]> findFirstSetInDeck() {
+        return util.findSets(deck, 1);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<int[]> findAllSetsInDeck() {
+        return util.findSets(deck, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int[] cardToFeatures() {
+        return util.cardToFeatures(tables[next()][0]);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(tables[next()]);
+    }
+}
@@ -0,0 +1,320 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.NullUserInterface;
+import bguspl.set.UtilImpl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Measures the claim throughput of a real dealer, table and players, with a no-op user interface and no delays.
+ * <p>
+ * For each number of players, one driver thread per player presses the keys of a claim through Player::keyPressed,
+ * waits for the verdict (until the player may play again), and removes any tokens left. A configurable share of the
+ * claims are valid sets, the rest are random slots. The results are written as JSON: claims per second, the
+ * key-to-verdict latency percentiles, and the time the dealer, player and driver threads spent blocked on monitors.
+ * With no delays a game runs out of cards in a fraction of a second, so games are played one after the other until
+ * the time of the run is up, and the rates are over the time the drivers were claiming (not dealing or game setup).
+ * <p>
+ * Run with: mvn -P jmh compile exec:java -Dexec.mainClass=bguspl.set.ex.ClaimThroughput
+ * -Dexec.args="[players, e.g. 1,4,16,64,256] [seconds per run] [share of valid claims] [output file]"
+ */
+public class ClaimThroughput {
+
+    private static final long VERDICT_TIMEOUT_NANOS = 10_000_000_000L;
+    private static final long CONTENTION_SAMPLE_MILLIS = 10;
+
+    private final int playerCount;
+    private final long durationMillis;
+    private final double validShare;
+
+    /**
+     * The results of a run.
+     */
+    private long claims, points, aborted, timeouts;
+    private int games;
+    private long claimingNanos;
+    private long[] latencies;
+    private final long[][] contention = new long[3][4];
+    private static final String[] ROLES = {"dealer", "players", "drivers"};
+
+    private ClaimThroughput(int playerCount, long durationMillis, double validShare) {
+        this.playerCount = playerCount;
+        this.durationMillis = durationMillis;
+        this.validShare = validShare;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] playerCounts = args.length > 0 ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1, 2, 4, 8, 16, 32, 64, 128, 256};
+        long durationMillis = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 3) * 1000);
+        double validShare = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads.isThreadContentionMonitoringSupported()) threads.setThreadContentionMonitoringEnabled(true);
+
+        List<ClaimThroughput> runs = new ArrayList<>();
+        for (int players : playerCounts) {
+            ClaimThroughput run = new ClaimThroughput(players, durationMillis, validShare);
+            run.run();
+            runs.add(run);
+            System.err.printf(Locale.ROOT, "%d players: %.1f claims/sec%n", players, run.claimsPerSecond());
+        }
+
+        StringBuilder json = new StringBuilder("{\"validShare\": ").append(validShare).append(", \"runs\": [");
+        for (int i = 0; i < runs.size(); i++)
+            json.append(i == 0 ? "\n  " : ",\n  ").append(runs.get(i).toJson());
+        json.append("\n]}\n");
+        if (args.length > 3) Files.write(Paths.get(args[3]), json.toString().getBytes());
+        else System.out.print(json);
+    }
+
+    private void run() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + durationMillis;
+        List<Driver> drivers = new ArrayList<>();
+        while (System.currentTimeMillis() < deadline && timeouts == 0)
+            playGame(deadline, drivers);
+
+        latencies = new long[(int) claims];
+        int position = 0;
+        for (Driver driver : drivers) {
+            System.arraycopy(driver.latencies, 0, latencies, position, (int) driver.claims);
+            position += driver.claims;
+        }
+        Arrays.sort(latencies);
+    }
+
+    /**
+     * Plays one game until it ends or the deadline passes.
+     *
+     * @param drivers - the drivers of the run, the drivers of the game are added to it.
+     */
+    private void playGame(long deadline, List<Driver> drivers) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", Integer.toString(playerCount));
+        properties.put("ComputerPlayers", "0");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("TurnTimeoutSeconds", "3600");
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getLogger("ClaimThroughput");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        UtilImpl util = new UtilImpl(config);
+        Env env = new Env(logger, config, new NullUserInterface(), util);
+
+        Table table = new Table(env);
+        Player[] players = new Player[playerCount];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, true);
+
+        // the game threads end with the game, so their contention is sampled while they run
+        Map<Long, long[]> sampled = new HashMap<>();
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                sampleContention(sampled);
+                try {
+                    Thread.sleep(CONTENTION_SAMPLE_MILLIS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }, "contention-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        while (table.countCards() < config.tableSize)
+            Thread.sleep(1);
+
+        Driver[] gameDrivers = new Driver[players.length];
+        Thread[] driverThreads = new Thread[players.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < players.length; i++) {
+            gameDrivers[i] = new Driver(env, table, players[i], deadline);
+            driverThreads[i] = new Thread(gameDrivers[i], "driver-" + i);
+            driverThreads[i].start();
+        }
+        for (Thread thread : driverThreads)
+            thread.join();
+        claimingNanos += System.nanoTime() - start;
+        games++;
+        sampleContention(sampled);
+
+        dealer.terminate();
+        Thread.interrupted(); // terminate() interrupts the calling thread
+        dealerThread.join(VERDICT_TIMEOUT_NANOS / 1_000_000);
+        sampler.interrupt();
+        sampler.join();
+        for (long[] thread : sampled.values()) // the sampler has ended
+            for (int i = 0; i < 4; i++)
+                contention[(int) thread[4]][i] += thread[i];
+
+        for (Driver driver : gameDrivers) {
+            claims += driver.claims;
+            points += driver.points;
+            aborted += driver.aborted;
+            timeouts += driver.timeouts;
+            drivers.add(driver);
+        }
+    }
+
+    /**
+     * Records the monitor contention so far of the live threads of the game, by thread id.
+     *
+     * @param sampled - the blocked count and millis, the waited count and millis, and the role of each thread.
+     */
+    private static void sampleContention(Map<Long, long[]> sampled) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info == null) continue;
+            String name = info.getThreadName();
+            int role = name.equals("dealer") ? 0 : name.startsWith("player") ? 1 : name.startsWith("driver-") ? 2 : -1;
+            if (role == -1) continue;
+            long[] sample = {info.getBlockedCount(), Math.max(0, info.getBlockedTime()), info.getWaitedCount(),
+                    Math.max(0, info.getWaitedTime()), role};
+            synchronized (sampled) {
+                sampled.put(info.getThreadId(), sample);
+            }
+        }
+    }
+
+    private double claimsPerSecond() {
+        return claimingNanos == 0 ? 0 : claims * 1e9 / claimingNanos;
+    }
+
+    private double percentileMicros(double percentile) {
+        if (latencies.length == 0) return 0;
+        int index = (int) Math.min(latencies.length - 1, Math.ceil(percentile * latencies.length) - 1);
+        return latencies[Math.max(0, index)] / 1000.0;
+    }
+
+    private String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT,
+                "{\"players\": %d, \"games\": %d, \"claimingSeconds\": %.2f, \"claims\": %d, \"points\": %d, \"nonPoints\": %d, "
+                        + "\"aborted\": %d, \"timeouts\": %d, \"claimsPerSecond\": %.1f, "
+                        + "\"latencyMicros\": {\"p50\": %.1f, \"p99\": %.1f, \"p999\": %.1f, \"max\": %.1f}, \"contention\": {",
+                playerCount, games, claimingNanos / 1e9, claims, points, claims - points, aborted, timeouts, claimsPerSecond(),
+                percentileMicros(0.5), percentileMicros(0.99), percentileMicros(0.999), percentileMicros(1)));
+        for (int role = 0; role < ROLES.length; role++)
+            json.append(String.format(Locale.ROOT,
+                    "%s\"%s\": {\"blockedCount\": %d, \"blockedMillis\": %d, \"waitedCount\": %d, \"waitedMillis\": %d}",
+                    role == 0 ? "" : ", ", ROLES[role], contention[role][0], contention[role][1], contention[role][2],
+                    contention[role][3]));
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Presses the keys of claims for a player until the deadline.
+     */
+    private class Driver implements Runnable {
+
+        private final Env env;
+        private final Table table;
+        private final Player player;
+        private final long deadline;
+        private final int[] layout;
+        private final List<Integer> cards = new ArrayList<>();
+
+        long claims, points, aborted, timeouts;
+        long[] latencies = new long[1024];
+
+        Driver(Env env, Table table, Player player, long deadline) {
+            this.env = env;
+            this.table = table;
+            this.player = player;
+            this.deadline = deadline;
+            this.layout = new int[env.config.tableSize];
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.currentTimeMillis() < deadline && !player.isTerminateTrue()) {
+                int[] slots = random.nextDouble() < validShare ? validClaim() : null;
+                if (slots == null) slots = randomClaim(random);
+
+                int score = player.score();
+                long start = System.nanoTime();
+                for (int slot : slots)
+                    player.keyPressed(slot);
+                if (!player.isPenaltyOrPointFreeze()) {
+                    // the claim was not made (e.g. a token was removed with a card, the table is being reshuffled, or
+                    // the game ended)
+                    aborted++;
+                } else {
+                    while (player.isPenaltyOrPointFreeze() && !player.isTerminateTrue()
+                            && System.nanoTime() - start < VERDICT_TIMEOUT_NANOS)
+                        Thread.yield();
+                    long latency = System.nanoTime() - start;
+                    if (player.isPenaltyOrPointFreeze() && player.isTerminateTrue()) {
+                        aborted++; // the game ended before the verdict
+                        break;
+                    }
+                    if (player.isPenaltyOrPointFreeze()) {
+                        timeouts++;
+                        break;
+                    }
+                    if (claims == latencies.length) latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                    latencies[(int) claims++] = latency;
+                    if (player.score() > score) points++;
+                }
+                // remove the tokens left by a claim that did not score
+                for (int slot : slots)
+                    if (!player.isASlotEmpty(slot)) player.keyPressed(slot);
+            }
+        }
+
+        /**
+         * @return - the slots of a set on the table, or null if there is none.
+         */
+        private int[] validClaim() {
+            table.snapshot(layout);
+            cards.clear();
+            for (int card : layout)
+                if (card != -1) cards.add(card);
+            List<int[]> sets = env.util.findSets(cards, 1);
+            if (sets.isEmpty()) return null;
+            int[] slots = new int[sets.get(0).length];
+            for (int i = 0; i < slots.length; i++)
+                for (int slot = 0; slot < layout.length; slot++)
+                    if (layout[slot] == sets.get(0)[i]) slots[i] = slot;
+            return slots;
+        }
+
+        private int[] randomClaim(ThreadLocalRandom random) {
+            int[] slots = new int[3];
+            for (int i = 0; i < slots.length; i++) {
+                int slot;
+                do slot = random.nextInt(env.config.tableSize);
+                while (contains(slots, i, slot));
+                slots[i] = slot;
+            }
+            return slots;
+        }
+
+        private boolean contains(int[] slots, int length, int slot) {
+            for (int i = 0; i < length; i++)
+                if (slots[i] == slot) return true;
+            return false;
+        }
+    }
+}
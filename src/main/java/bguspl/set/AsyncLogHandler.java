@@ -0,0 +1,182 @@
+package bguspl.set;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * A log handler that writes to a file on a background thread, so the game threads never format or write log records.
+ * <p>
+ * The records are copied into a preallocated ring buffer of events (the message pattern and its parameters are kept
+ * as they are). A single writer thread formats the events with the handler's formatter, and writes them to the file
+ * in batches: the file is flushed only when the ring is drained. If the ring is full, the logging thread waits for
+ * the writer to make room, so no record is lost.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The number of events in the ring (a power of two).
+     */
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private static class Event {
+        long millis;
+        Level level;
+        String loggerName;
+        String message;
+        Object[] parameters;
+        Throwable thrown;
+    }
+
+    private final Event[] ring = new Event[CAPACITY];
+
+    /**
+     * The sequence of the last event published in each slot of the ring (-1 if none yet).
+     */
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+
+    /**
+     * The next sequence to claim by a logging thread.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /**
+     * The next sequence the writer will consume, and the first sequence that was not flushed to the file yet
+     * (written by the writer thread only).
+     */
+    private volatile long consumed;
+    private volatile long flushed;
+
+    private final Writer out;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * @param filename - the log file to write to (it is overwritten).
+     * @throws IOException - if the file cannot be opened.
+     */
+    public AsyncLogHandler(String filename) throws IOException {
+        setFormatter(new SimpleFormatter());
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename), StandardCharsets.UTF_8), 1 << 16);
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Event();
+            published.set(i, -1);
+        }
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+
+        long sequence = claimed.getAndIncrement();
+        for (long park = FULL_PARK_NANOS; sequence - consumed >= CAPACITY; park = Math.min(2 * park, IDLE_PARK_NANOS)) {
+            // the ring is full, wait for the writer to make room (parked, a slow disk must not cost a core per thread)
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(park);
+        }
+
+        int index = (int) sequence & MASK;
+        Event event = ring[index];
+        event.millis = record.getMillis();
+        event.level = record.getLevel();
+        event.loggerName = record.getLoggerName();
+        event.message = record.getMessage();
+        event.parameters = record.getParameters();
+        event.thrown = record.getThrown();
+        published.lazySet(index, sequence);
+    }
+
+    /**
+     * Waits until all the records published so far are written to the file.
+     */
+    @Override
+    public void flush() {
+        long target = claimed.get();
+        while (flushed < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException ignored) {}
+    }
+
+    private void write() {
+        // the record passed to the formatter is reused for all the events
+        LogRecord record = new LogRecord(Level.ALL, null);
+        long next = 0;
+        boolean dirty = false;
+        while (true) {
+            int index = (int) next & MASK;
+            if (published.get(index) == next) {
+                Event event = ring[index];
+                setMillis(record, event.millis);
+                record.setLevel(event.level);
+                record.setLoggerName(event.loggerName);
+                record.setMessage(event.message);
+                record.setParameters(event.parameters);
+                record.setThrown(event.thrown);
+                event.message = null;
+                event.parameters = null;
+                event.thrown = null;
+                consumed = ++next;
+                try {
+                    out.write(getFormatter().format(record));
+                    dirty = true;
+                } catch (Exception e) {
+                    reportError(null, e, ErrorManager.WRITE_FAILURE);
+                }
+                continue;
+            }
+
+            // the ring is drained (or the next event is not published yet), end the batch
+            if (dirty) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    reportError(null, e, ErrorManager.FLUSH_FAILURE);
+                }
+                dirty = false;
+            }
+            flushed = next;
+            if (closed && next == claimed.get()) break;
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    @SuppressWarnings("deprecation") // its replacement, setInstant, is not in Java 8
+    private static void setMillis(LogRecord record, long millis) {
+        record.setMillis(millis);
+    }
+}
@@ -0,0 +1,61 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Packs all the card images into a single atlas image, so the game can load one image instead of one per card.
+ * It runs at build time with the "atlas" maven profile, see pom.xml.
+ */
+public class CardAtlas {
+
+    /**
+     * The resource names of the atlas image and its description.
+     */
+    static final String IMAGE = "cards/atlas.png";
+    static final String PROPERTIES = "cards/atlas.properties";
+
+    /**
+     * Generates the atlas.
+     *
+     * @param args - the directory of the card images, the feature count and the feature size (default: 4 3).
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "src/main/resources/cards");
+        Properties deck = new Properties();
+        deck.put("FeatureCount", args.length > 1 ? args[1] : "4");
+        deck.put("FeatureSize", args.length > 2 ? args[2] : "3");
+        Config config = new Config(java.util.logging.Logger.getLogger("CardAtlas"), deck);
+
+        int columns = (int) Math.ceil(Math.sqrt(config.deckSize));
+        int rows = (config.deckSize + columns - 1) / columns;
+        BufferedImage atlas = null;
+        for (int card = 0; card < config.deckSize; card++) {
+            String name = CardImages.cardResource(card, config).substring("cards/".length());
+            BufferedImage image = ImageIO.read(directory.resolve(name).toFile());
+            if (atlas == null)
+                atlas = new BufferedImage(columns * image.getWidth(), rows * image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = atlas.createGraphics();
+            g.drawImage(image, card % columns * image.getWidth(), card / columns * image.getHeight(), null);
+            g.dispose();
+        }
+        if (atlas == null) return;
+
+        Path root = directory.getParent();
+        ImageIO.write(atlas, "png", root.resolve(IMAGE).toFile());
+        Properties properties = new Properties();
+        properties.put("Cards", Integer.toString(config.deckSize));
+        properties.put("Columns", Integer.toString(columns));
+        try (OutputStream os = Files.newOutputStream(root.resolve(PROPERTIES))) {
+            properties.store(os, "generated by bguspl.set.CardAtlas");
+        }
+        System.out.println("card atlas of " + config.deckSize + " cards written to " + root.resolve(IMAGE));
+    }
+}
@@ -0,0 +1,200 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Loads the card images lazily, decoding them in parallel on a pool of background threads.
+ * If the card atlas is enabled (and was generated by CardAtlas), all the cards are sliced out of a single image.
+ * Decks with no image files (e.g. a feature size of 10 or more) are drawn by CardRenderer instead.
+ * <p>
+ * The images are drawn once in the cell size and the screen format, and kept in a cache bounded by the number of bytes
+ * of the images, so large decks do not need all their images in memory.
+ */
+class CardImages {
+
+    private final Config config;
+    private final Logger logger;
+    private final ExecutorService pool;
+
+    /**
+     * The screen format to draw the images in (null if headless).
+     */
+    private final GraphicsConfiguration screen;
+
+    /**
+     * Draws the cards if there are no image files for the deck (null if there are).
+     */
+    private final CardRenderer renderer;
+
+    /**
+     * The cell sized card images, least recently used first, keyed by card and cell size (guarded by this).
+     */
+    private final Map<Long, Image> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final long cacheCapacityBytes;
+    private long cacheBytes;
+
+    /**
+     * The images being loaded (guarded by this).
+     */
+    private final Map<Long, CompletableFuture<Image>> loading = new HashMap<>();
+
+    /**
+     * The atlas image (null if it is not used).
+     */
+    private final CompletableFuture<BufferedImage> atlas;
+    private int atlasColumns;
+
+    CardImages(Config config, Logger logger) {
+        this.config = config;
+        this.logger = logger;
+        this.cacheCapacityBytes = config.cardCacheMegabytes * 1024L * 1024L;
+        this.pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "card-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.screen = GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+
+        boolean imageFiles = config.featureSize < 10 // otherwise there will be naming conflicts
+                && CardImages.class.getClassLoader().getResource(cardResource(config.deckSize - 1, config)) != null;
+        this.renderer = imageFiles ? null : new CardRenderer(config);
+        if (renderer != null)
+            logger.info("no image files for the deck, the cards will be drawn.");
+        this.atlas = config.cardAtlas && imageFiles ? loadAtlas() : null;
+    }
+
+    /**
+     * Loads an image resource on the calling thread.
+     *
+     * @param filename - the resource name.
+     * @return - the decoded image.
+     */
+    static BufferedImage loadImageResource(String filename) {
+        URL imageResource = CardImages.class.getClassLoader().getResource(filename);
+        if (imageResource == null)
+            throw new RuntimeException(new FileNotFoundException(filename));
+        try {
+            return ImageIO.read(imageResource);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the resource name of the card image.
+     */
+    static String cardResource(int card, Config config) {
+        return "cards/" + UserInterfaceSwing.intInBaseToPaddedString(card, config.featureCount, config.featureSize) + ".png";
+    }
+
+    /**
+     * Starts loading the image of a card in the cell size, unless it is already loaded or being loaded.
+     *
+     * @param card - the card id.
+     * @return - the image of the card, completed when it is ready.
+     */
+    synchronized CompletableFuture<Image> load(int card) {
+        long key = key(card, config.cellWidth, config.cellHeight);
+        Image image = cache.get(key);
+        if (image != null) return CompletableFuture.completedFuture(image);
+
+        CompletableFuture<Image> future = loading.get(key);
+        if (future == null) {
+            CompletableFuture<BufferedImage> source = renderer != null ? CompletableFuture.completedFuture(null)
+                    : atlas != null ? atlas.thenApply(atlasImage -> slice(atlasImage, card))
+                    : CompletableFuture.supplyAsync(() -> loadImageResource(cardResource(card, config)), pool);
+            future = source.thenApplyAsync(sourceImage -> draw(card, sourceImage), pool);
+            loading.put(key, future);
+            future.whenComplete((loaded, e) -> loaded(key, loaded, e));
+        }
+        return future;
+    }
+
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static long key(int card, int width, int height) {
+        return ((long) card << 32) | ((long) width << 16) | height;
+    }
+
+    /**
+     * Draws a card in the cell size and the screen format.
+     */
+    private Image draw(int card, BufferedImage source) {
+        BufferedImage image = screen != null
+                ? screen.createCompatibleImage(config.cellWidth, config.cellHeight, Transparency.TRANSLUCENT)
+                : new BufferedImage(config.cellWidth, config.cellHeight, BufferedImage.TYPE_INT_ARGB);
+        if (source == null) {
+            renderer.render(card, image);
+        } else {
+            Graphics2D g = image.createGraphics();
+            g.drawImage(source, 0, 0, null);
+            g.dispose();
+        }
+        return image;
+    }
+
+    private synchronized void loaded(long key, Image image, Throwable e) {
+        loading.remove(key);
+        if (e != null) {
+            logger.severe("cannot load the image of card " + (key >>> 32) + ": " + e.getMessage());
+            return;
+        }
+
+        cache.put(key, image);
+        cacheBytes += bytes(image);
+        // evict the least recently used images, but always keep the last one
+        for (Iterator<Image> it = cache.values().iterator(); cacheBytes > cacheCapacityBytes && cache.size() > 1; ) {
+            cacheBytes -= bytes(it.next());
+            it.remove();
+        }
+    }
+
+    private static long bytes(Image image) {
+        return 4L * image.getWidth(null) * image.getHeight(null);
+    }
+
+    private CompletableFuture<BufferedImage> loadAtlas() {
+        Properties properties = new Properties();
+        try (InputStream is = CardImages.class.getClassLoader().getResourceAsStream(CardAtlas.PROPERTIES)) {
+            if (is == null) throw new FileNotFoundException(CardAtlas.PROPERTIES);
+            properties.load(is);
+        } catch (IOException e) {
+            logger.severe("cannot read the card atlas, loading the cards one by one: " + e.getMessage());
+            return null;
+        }
+        if (Integer.parseInt(properties.getProperty("Cards")) != config.deckSize) {
+            logger.severe("the card atlas does not match the deck size, loading the cards one by one.");
+            return null;
+        }
+        atlasColumns = Integer.parseInt(properties.getProperty("Columns"));
+        return CompletableFuture.supplyAsync(() -> loadImageResource(CardAtlas.IMAGE), pool);
+    }
+
+    private BufferedImage slice(BufferedImage image, int card) {
+        int columns = atlasColumns;
+        int rows = (config.deckSize + columns - 1) / columns;
+        int width = image.getWidth() / columns;
+        int height = image.getHeight() / rows;
+        return image.getSubimage(card % columns * width, card / columns * height, width, height);
+    }
+}
@@ -0,0 +1,139 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws card images from the card features, for decks that have no image files (any feature count and size).
+ * The first four features are drawn like the classic cards: the number of shapes, their color, their shape and their
+ * shading. Any further features are drawn as a row of numbered colored pips at the bottom of the card.
+ */
+class CardRenderer {
+
+    private final Config config;
+
+    CardRenderer(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Draws a card into an image.
+     *
+     * @param card  - the card id.
+     * @param image - the image to draw into (the card fills all of it).
+     */
+    void render(int card, BufferedImage image) {
+        int[] features = new int[config.featureCount];
+        for (int i = config.featureCount - 1; i >= 0; --i) {
+            features[i] = card % config.featureSize;
+            card /= config.featureSize;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // the card itself
+        int margin = Math.max(2, Math.min(width, height) / 20);
+        g.setColor(Color.WHITE);
+        g.fill(new RoundRectangle2D.Float(margin, margin, width - 2 * margin, height - 2 * margin, 4 * margin, 4 * margin));
+        g.setColor(Color.GRAY);
+        g.draw(new RoundRectangle2D.Float(margin, margin, width - 2 * margin, height - 2 * margin, 4 * margin, 4 * margin));
+
+        int count = feature(features, 0) + 1;
+        Color color = color(feature(features, 1));
+        int shape = feature(features, 2);
+        int shading = feature(features, 3);
+
+        // the shapes, side by side in the middle of the card
+        boolean pips = config.featureCount > 4;
+        int areaHeight = (pips ? height * 2 / 3 : height) - 4 * margin;
+        int slotWidth = (width - 4 * margin) / Math.max(3, config.featureSize);
+        int shapeWidth = slotWidth * 3 / 4;
+        int shapeHeight = Math.min(areaHeight, shapeWidth * 2);
+        int left = (width - count * slotWidth) / 2 + (slotWidth - shapeWidth) / 2;
+        int top = 2 * margin + (areaHeight - shapeHeight) / 2;
+        g.setStroke(new BasicStroke(Math.max(1f, shapeWidth / 20f)));
+        for (int i = 0; i < count; i++)
+            drawShape(g, shape(shape, left + i * slotWidth, top, shapeWidth, shapeHeight), color, shading);
+
+        // any further features
+        if (pips) {
+            int extra = config.featureCount - 4;
+            int pip = Math.min((width - 4 * margin) / extra, height / 3 - 2 * margin);
+            int pipsLeft = (width - extra * pip) / 2;
+            int pipsTop = height - 2 * margin - pip;
+            g.setFont(new Font("SansSerif", Font.BOLD, Math.max(8, pip / 2)));
+            FontMetrics metrics = g.getFontMetrics();
+            for (int i = 0; i < extra; i++) {
+                int value = features[4 + i];
+                int x = pipsLeft + i * pip;
+                g.setColor(color(value));
+                g.fillOval(x + 1, pipsTop + 1, pip - 2, pip - 2);
+                String text = Integer.toString(value, Character.MAX_RADIX);
+                g.setColor(Color.WHITE);
+                g.drawString(text, x + (pip - metrics.stringWidth(text)) / 2, pipsTop + (pip + metrics.getAscent()) / 2 - 2);
+            }
+        }
+        g.dispose();
+    }
+
+    private int feature(int[] features, int i) {
+        return i < features.length ? features[i] : 0;
+    }
+
+    private Color color(int value) {
+        if (config.featureSize <= 3) return new Color[]{Color.RED, new Color(0, 140, 0), new Color(110, 0, 170)}[value];
+        return Color.getHSBColor((float) value / config.featureSize, 0.85f, 0.8f);
+    }
+
+    private Shape shape(int shape, int x, int y, int width, int height) {
+        switch (shape) {
+            case 0:
+                return new Ellipse2D.Float(x, y, width, height);
+            case 1:
+                return polygon(4, x, y, width, height, 0);
+            case 2:
+                return new RoundRectangle2D.Float(x, y, width, height, width / 2f, width / 2f);
+            default:
+                return polygon(shape, x, y, width, height, -Math.PI / 2);
+        }
+    }
+
+    private Shape polygon(int sides, int x, int y, int width, int height, double rotation) {
+        Path2D.Float polygon = new Path2D.Float();
+        for (int i = 0; i < sides; i++) {
+            double angle = rotation + 2 * Math.PI * i / sides;
+            double px = x + width / 2.0 + Math.cos(angle) * width / 2.0;
+            double py = y + height / 2.0 + Math.sin(angle) * height / 2.0;
+            if (i == 0) polygon.moveTo(px, py);
+            else polygon.lineTo(px, py);
+        }
+        polygon.closePath();
+        return polygon;
+    }
+
+    private void drawShape(Graphics2D g, Shape shape, Color color, int shading) {
+        g.setColor(color);
+        if (shading == 0) { // solid
+            g.fill(shape);
+        } else if (shading == 1) { // striped
+            Shape clip = g.getClip();
+            g.clip(shape);
+            Rectangle bounds = shape.getBounds();
+            for (int y = bounds.y; y < bounds.y + bounds.height; y += 4)
+                g.drawLine(bounds.x, y, bounds.x + bounds.width, y);
+            g.setClip(clip);
+        } else if (shading > 2) { // translucent, more opaque for higher values
+            int alpha = 255 * (shading - 2) / (config.featureSize - 2);
+            g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha));
+            g.fill(shape);
+            g.setColor(color);
+        }
+        g.draw(shape);
+    }
+}
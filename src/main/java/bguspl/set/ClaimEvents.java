@@ -0,0 +1,82 @@
+package bguspl.set;
+
+import java.util.logging.Logger;
+
+/**
+ * The stages of a claim, as Java Flight Recorder events: a key press, the claim queued for the dealer, the claim
+ * validated, the verdict and the end of the freeze that followed it.
+ * <p>
+ * This class records nothing. With config.flightRecorderEvents, the environment gets a FlightRecorderClaimEvents
+ * instead, so the rest of the game never refers to jdk.jfr (which a Java 8 runtime may not have). The events are
+ * only built while a recording enables them, e.g. with -XX:StartFlightRecording or jcmd JFR.start.
+ */
+public class ClaimEvents {
+
+    /**
+     * Claim events that record nothing.
+     */
+    public static final ClaimEvents NONE = new ClaimEvents();
+
+    /**
+     * The verdicts of a validated claim.
+     */
+    public static final String POINT = "point";
+    public static final String PENALTY = "penalty";
+    public static final String STALE = "stale";
+
+    ClaimEvents() {
+    }
+
+    /**
+     * @return - the claim events configured by config.flightRecorderEvents.
+     */
+    static ClaimEvents create(Config config, Logger logger) {
+        if (!config.flightRecorderEvents) return NONE;
+        try {
+            return new FlightRecorderClaimEvents();
+        } catch (LinkageError e) {
+            logger.severe("flight recorder events are not supported by this runtime: " + e);
+            return NONE;
+        }
+    }
+
+    /**
+     * A player pressed a key.
+     *
+     * @param lockWaitNanos - the time the key press waited to enter the dealer's monitor.
+     */
+    public void keyPressed(int player, int slot, long lockWaitNanos) {
+    }
+
+    /**
+     * A claim was queued for the dealer.
+     *
+     * @param queued - the number of claims queued, including this one.
+     */
+    public void claimQueued(int player, int[] slots, int queued) {
+    }
+
+    /**
+     * The dealer validated a claim.
+     *
+     * @param claimNanos      - System.nanoTime() when the claim was queued.
+     * @param validationNanos - System.nanoTime() when the dealer took the claim from the queue.
+     * @param verdict         - POINT, PENALTY or STALE.
+     */
+    public void claimValidated(int player, int[] slots, long claimNanos, long validationNanos, String verdict) {
+    }
+
+    /**
+     * A player got a point or a penalty.
+     */
+    public void verdict(int player, boolean point, long freezeMillis) {
+    }
+
+    /**
+     * The freeze of a player is over.
+     *
+     * @param frozenMillis - how long the player was frozen.
+     */
+    public void freezeExpired(int player, long frozenMillis) {
+    }
+}
@@ -0,0 +1,169 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The card that completes each pair of cards to a legal set, for decks with 3 values per feature, precomputed once
+ * into a file in config.precomputedTablesDir and memory mapped (read only) by all the games of the process.
+ * <p>
+ * There is an entry per unordered pair of distinct cards, i.e. deckSize * (deckSize - 1) / 2 entries (21.5 million for
+ * 8 features), so building the table takes a while for the large decks while mapping it takes next to nothing.
+ * The file starts with a header of the format version and the deck shape, and is rebuilt when the header does not
+ * match (e.g. the format changed). It is written to a temporary file first and then moved in place, so a process
+ * never maps a half written table.
+ */
+public class ComplementTable {
+
+    /**
+     * The file format: the magic number ("SETC"), the version, the feature count, the feature size and the size of an
+     * entry, followed by the entries from HEADER_BYTES on (in native byte order).
+     */
+    static final int MAGIC = 0x53455443;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    /**
+     * The tables mapped by the process, by file.
+     */
+    private static final Map<Path, ComplementTable> tables = new HashMap<>();
+
+    private final ByteBuffer entries;
+    private final int entryBytes;
+
+    private ComplementTable(ByteBuffer entries, int entryBytes) {
+        this.entries = entries;
+        this.entryBytes = entryBytes;
+    }
+
+    /**
+     * @return - the table shared by the games with the deck of the given config, building its file if needed
+     *           (null if config.precomputedTablesDir is empty, the deck does not have 3 values per feature, the deck
+     *           is too large to map, or the file cannot be built or mapped).
+     */
+    public static ComplementTable shared(Config config, Logger logger) {
+        if (config.precomputedTablesDir.isEmpty() || !fits(config)) return null;
+        Path file = Paths.get(config.precomputedTablesDir, "complements-" + config.featureCount + "x" + config.featureSize + ".bin");
+        synchronized (tables) {
+            ComplementTable table = tables.get(file);
+            if (table != null) return table;
+            try {
+                table = open(file, config, logger);
+            } catch (IOException e) {
+                logger.severe("cannot use the complement table " + file + ": " + e.getMessage());
+                return null;
+            }
+            tables.put(file, table);
+            return table;
+        }
+    }
+
+    /**
+     * @return - true iff the table applies to the deck of the given config and can be mapped.
+     */
+    static boolean fits(Config config) {
+        return config.featureSize == 3 && fileBytes(config.deckSize) <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Maps the table in the given file, after (re)building it if it is missing or does not match the deck.
+     */
+    static ComplementTable open(Path file, Config config, Logger logger) throws IOException {
+        MappedByteBuffer mapped = map(file, config);
+        if (mapped == null) {
+            long start = System.currentTimeMillis();
+            build(file, config);
+            mapped = map(file, config);
+            if (mapped == null) throw new IOException("the built file does not match the deck");
+            logger.info("built the complement table " + file + " in " + (System.currentTimeMillis() - start) + " ms.");
+        }
+        return new ComplementTable(mapped.order(ByteOrder.nativeOrder()), entryBytes(config.deckSize));
+    }
+
+    /**
+     * @return - the card that completes the two given distinct cards to a legal set.
+     * @throws IllegalArgumentException - if the cards are the same card (there is no entry for such a pair).
+     */
+    public int complement(int card1, int card2) {
+        if (card1 == card2) throw new IllegalArgumentException("the same card twice: " + card1);
+        int high = Math.max(card1, card2);
+        int low = Math.min(card1, card2);
+        int offset = (int) (HEADER_BYTES + entryBytes * (high * (high - 1L) / 2 + low));
+        return entryBytes == Character.BYTES ? entries.getChar(offset) : entries.getInt(offset);
+    }
+
+    private static int entryBytes(int deckSize) {
+        return deckSize <= Character.MAX_VALUE ? Character.BYTES : Integer.BYTES;
+    }
+
+    private static long fileBytes(int deckSize) {
+        return HEADER_BYTES + (long) entryBytes(deckSize) * deckSize * (deckSize - 1) / 2;
+    }
+
+    /**
+     * @return - the file mapped read only, or null if it is missing or its header or size do not match the deck.
+     */
+    private static MappedByteBuffer map(Path file, Config config) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) != fileBytes(config.deckSize)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.nativeOrder());
+            boolean matches = mapped.getInt(0) == MAGIC && mapped.getInt(4) == VERSION
+                    && mapped.getInt(8) == config.featureCount && mapped.getInt(12) == config.featureSize
+                    && mapped.getInt(16) == entryBytes(config.deckSize);
+            return matches ? mapped : null;
+        }
+    }
+
+    private static void build(Path file, Config config) throws IOException {
+        int deckSize = config.deckSize;
+        int featureCount = config.featureCount;
+        int entryBytes = entryBytes(deckSize);
+
+        // the features of each card, the least significant first
+        byte[] features = new byte[deckSize * featureCount];
+        for (int card = 0; card < deckSize; card++)
+            for (int i = 0, value = card; i < featureCount; i++, value /= 3)
+                features[card * featureCount + i] = (byte) (value % 3);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes(deckSize));
+                out.order(ByteOrder.nativeOrder());
+                out.putInt(MAGIC).putInt(VERSION).putInt(featureCount).putInt(config.featureSize).putInt(entryBytes);
+                out.position(HEADER_BYTES);
+                for (int high = 1; high < deckSize; high++)
+                    for (int low = 0; low < high; low++) {
+                        // each feature of the complement is the one making the sum of the three divisible by 3
+                        int complement = 0;
+                        for (int i = featureCount - 1; i >= 0; i--)
+                            complement = complement * 3 + (6 - features[high * featureCount + i] - features[low * featureCount + i]) % 3;
+                        if (entryBytes == Character.BYTES) out.putChar((char) complement);
+                        else out.putInt(complement);
+                    }
+                out.force();
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
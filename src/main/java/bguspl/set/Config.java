@@ -56,6 +56,11 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * The maximal number of table layouts (up to feature permutations) to keep the sets of
+     */
+    public final int setCacheSize;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -86,6 +91,11 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The time a computer player waits before choosing its next claim (in milliseconds)
+     */
+    public final long computerDelayMillis;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,6 +142,76 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The number of rows of players shown in the score board (more rows are scrolled)
+     */
+    public final int scoreboardRows;
+
+    /**
+     * The number of players shown in the leaderboard (toggled by clicking the score board, 0 to disable)
+     */
+    public final int leaderboardSize;
+
+    /**
+     * The maximal number of times per second the countdown and freeze displays are updated
+     */
+    public final int uiRefreshHz;
+
+    /**
+     * Whether to load the card images from the pre-packed atlas (generated with the "atlas" maven profile)
+     */
+    public final boolean cardAtlas;
+
+    /**
+     * The maximal size (in megabytes) of the card images kept in memory
+     */
+    public final int cardCacheMegabytes;
+
+    /**
+     * The port spectators connect to for a live stream of the game (0 to disable)
+     */
+    public final int spectatorPort;
+
+    /**
+     * The maximal size (in kilobytes) of the updates queued for a spectator, slower spectators get snapshots instead
+     */
+    public final int spectatorBufferKilobytes;
+
+    /**
+     * The file to record the game journal in, for replaying with GameReplay (empty to disable)
+     */
+    public final String journalFile;
+
+    /**
+     * The number of journal records between snapshots of the table (the most records replayed when seeking)
+     */
+    public final int journalSnapshotInterval;
+
+    /**
+     * Whether to emit Java Flight Recorder events for every stage of a claim (recorded only while a recording is on)
+     */
+    public final boolean flightRecorderEvents;
+
+    /**
+     * The number of milliseconds between reports of the CPU and contention time of each game thread (0 for a final report only)
+     */
+    public final long threadReportMillis;
+
+    /**
+     * Whether to keep the primitive state of the game (see GameState) off the heap, in an arena shared by the games
+     */
+    public final boolean offHeapState;
+
+    /**
+     * The number of game records in each direct buffer of the shared off heap arena
+     */
+    public final int stateArenaGames;
+
+    /**
+     * The directory of the precomputed tables (e.g. the complement of each pair of cards), built once per deck shape and memory mapped by the games (empty to disable)
+     */
+    public final String precomputedTablesDir;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +235,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -204,12 +284,14 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        setCacheSize = Integer.parseInt(properties.getProperty("SetCacheSize", "4096"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        computerDelayMillis = (long) (Double.parseDouble(properties.getProperty("ComputerDelaySeconds", "0.2")) * 1000.0);
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -224,6 +306,20 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        scoreboardRows = Integer.parseInt(properties.getProperty("ScoreboardRows", "3"));
+        leaderboardSize = Integer.parseInt(properties.getProperty("LeaderboardSize", "10"));
+        uiRefreshHz = Integer.parseInt(properties.getProperty("UiRefreshHz", "30"));
+        cardAtlas = Boolean.parseBoolean(properties.getProperty("CardAtlas", "False"));
+        cardCacheMegabytes = Integer.parseInt(properties.getProperty("CardCacheMegabytes", "64"));
+        spectatorPort = Integer.parseInt(properties.getProperty("SpectatorPort", "0"));
+        spectatorBufferKilobytes = Integer.parseInt(properties.getProperty("SpectatorBufferKilobytes", "64"));
+        journalFile = properties.getProperty("JournalFile", "").trim();
+        journalSnapshotInterval = Integer.parseInt(properties.getProperty("JournalSnapshotInterval", "256"));
+        flightRecorderEvents = Boolean.parseBoolean(properties.getProperty("FlightRecorderEvents", "False"));
+        threadReportMillis = (long) (Double.parseDouble(properties.getProperty("ThreadReportSeconds", "10")) * 1000.0);
+        offHeapState = Boolean.parseBoolean(properties.getProperty("OffHeapState", "False"));
+        stateArenaGames = Integer.parseInt(properties.getProperty("StateArenaGames", "64"));
+        precomputedTablesDir = properties.getProperty("PrecomputedTablesDir", "").trim();
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
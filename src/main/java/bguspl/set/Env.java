@@ -8,11 +8,23 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final GameJournal journal;
+    public final GameMetrics metrics;
+    public final ClaimEvents events;
+    public final GameState state;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, GameJournal.NONE);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameJournal journal) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.journal = journal;
+        this.metrics = new GameMetrics();
+        this.events = ClaimEvents.create(config, logger);
+        this.state = GameState.create(config);
     }
 }
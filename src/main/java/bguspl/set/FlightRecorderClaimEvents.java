@@ -0,0 +1,170 @@
+package bguspl.set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.Arrays;
+
+/**
+ * Claim events that are committed to Java Flight Recorder (see ClaimEvents).
+ * <p>
+ * Each event is checked with shouldCommit before its fields are filled, so while no recording enables it an event
+ * costs an allocation that escape analysis removes, and the slots are only formatted when the event is recorded.
+ */
+class FlightRecorderClaimEvents extends ClaimEvents {
+
+    FlightRecorderClaimEvents() {
+        // fail here, and not on the first claim, if the runtime has no flight recorder
+        new KeyPress().shouldCommit();
+    }
+
+    @Override
+    public void keyPressed(int player, int slot, long lockWaitNanos) {
+        KeyPress event = new KeyPress();
+        if (!event.shouldCommit()) return;
+        event.player = player;
+        event.slot = slot;
+        event.lockWait = lockWaitNanos;
+        event.commit();
+    }
+
+    @Override
+    public void claimQueued(int player, int[] slots, int queued) {
+        ClaimQueued event = new ClaimQueued();
+        if (!event.shouldCommit()) return;
+        event.player = player;
+        event.slots = Arrays.toString(slots);
+        event.queued = queued;
+        event.commit();
+    }
+
+    @Override
+    public void claimValidated(int player, int[] slots, long claimNanos, long validationNanos, String verdict) {
+        ClaimValidated event = new ClaimValidated();
+        if (!event.shouldCommit()) return;
+        long now = System.nanoTime();
+        event.player = player;
+        event.slots = Arrays.toString(slots);
+        event.queueTime = validationNanos - claimNanos;
+        event.validationTime = now - validationNanos;
+        event.verdict = verdict;
+        event.commit();
+    }
+
+    @Override
+    public void verdict(int player, boolean point, long freezeMillis) {
+        Verdict event = new Verdict();
+        if (!event.shouldCommit()) return;
+        event.player = player;
+        event.point = point;
+        event.freeze = freezeMillis;
+        event.commit();
+    }
+
+    @Override
+    public void freezeExpired(int player, long frozenMillis) {
+        FreezeExpired event = new FreezeExpired();
+        if (!event.shouldCommit()) return;
+        event.player = player;
+        event.frozen = frozenMillis;
+        event.commit();
+    }
+
+    @Name("bguspl.set.KeyPress")
+    @Label("Key Press")
+    @Category({"SET", "Claims"})
+    @Description("A player pressed the key of a slot")
+    @StackTrace(false)
+    static class KeyPress extends Event {
+
+        @Label("Player")
+        int player;
+
+        @Label("Slot")
+        int slot;
+
+        @Label("Dealer Lock Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long lockWait;
+    }
+
+    @Name("bguspl.set.ClaimQueued")
+    @Label("Claim Queued")
+    @Category({"SET", "Claims"})
+    @Description("A player placed its last token and its claim was queued for the dealer")
+    @StackTrace(false)
+    static class ClaimQueued extends Event {
+
+        @Label("Player")
+        int player;
+
+        @Label("Slots")
+        String slots;
+
+        @Label("Queued Claims")
+        int queued;
+    }
+
+    @Name("bguspl.set.ClaimValidated")
+    @Label("Claim Validated")
+    @Category({"SET", "Claims"})
+    @Description("The dealer took a claim from the queue and decided it")
+    @StackTrace(false)
+    static class ClaimValidated extends Event {
+
+        @Label("Player")
+        int player;
+
+        @Label("Slots")
+        String slots;
+
+        @Label("Time In Queue")
+        @Timespan(Timespan.NANOSECONDS)
+        long queueTime;
+
+        @Label("Validation Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long validationTime;
+
+        @Label("Verdict")
+        String verdict;
+    }
+
+    @Name("bguspl.set.Verdict")
+    @Label("Verdict")
+    @Category({"SET", "Claims"})
+    @Description("A player got a point or a penalty, and is frozen")
+    @StackTrace(false)
+    static class Verdict extends Event {
+
+        @Label("Player")
+        int player;
+
+        @Label("Point")
+        boolean point;
+
+        @Label("Freeze")
+        @Timespan(Timespan.MILLISECONDS)
+        long freeze;
+    }
+
+    @Name("bguspl.set.FreezeExpired")
+    @Label("Freeze Expired")
+    @Category({"SET", "Claims"})
+    @Description("The freeze of a player after a verdict is over")
+    @StackTrace(false)
+    static class FreezeExpired extends Event {
+
+        @Label("Player")
+        int player;
+
+        @Label("Frozen")
+        @Timespan(Timespan.MILLISECONDS)
+        long frozen;
+    }
+}
@@ -0,0 +1,312 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+import static bguspl.set.VarInts.*;
+
+/**
+ * A compact binary record of a game: every deal, token, claim, verdict, reshuffle and score change, for replaying it
+ * later with GameReplay.
+ * <p>
+ * The journal starts with a header describing the game. Each record is a type byte, the (varint) milliseconds since
+ * the previous record and its (varint) arguments. Every config.journalSnapshotInterval records, a snapshot of the
+ * table and the scores is written, and its time and file offset are added to an index. The index is appended when the
+ * journal is closed (followed by its offset, its size and INDEX_MAGIC), so a replay can seek with a binary search.
+ * <p>
+ * The records are written through a buffered FileChannel, by the thread that records them. The buffer is written to
+ * the file at every snapshot and at least once a second, so a journal of a game that crashed can still be replayed.
+ */
+public class GameJournal {
+
+    /**
+     * A journal that records nothing.
+     */
+    public static final GameJournal NONE = new GameJournal();
+
+    static final int MAGIC = 0x5345544A; // "SETJ"
+    static final int INDEX_MAGIC = 0x53455449; // "SETI"
+    static final int VERSION = 1;
+    static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final long DRAIN_MILLIS = 1000;
+
+    /**
+     * The record types.
+     */
+    static final byte DEAL = 1;
+    static final byte REMOVE = 2;
+    static final byte TOKEN = 3;
+    static final byte TOKEN_REMOVED = 4;
+    static final byte CLAIM = 5;
+    static final byte VERDICT = 6;
+    static final byte RESHUFFLE = 7;
+    static final byte SCORE = 8;
+    static final byte SNAPSHOT = 9;
+
+    /**
+     * The verdicts of a claim.
+     */
+    public static final int POINT = 0;
+    public static final int PENALTY = 1;
+    public static final int STALE = 2;
+
+    private final Logger logger;
+    private final FileChannel channel;
+    private final LongSupplier clock;
+    private final int snapshotInterval;
+    private final ByteBuffer buffer;
+
+    /**
+     * The state of the game as recorded so far, for the snapshots (guarded by this).
+     */
+    private final int[] slotToCard;
+    private final long[][] slotTokens;
+    private final int[] scores;
+
+    /**
+     * The time of the last record and the records since the last snapshot (guarded by this).
+     */
+    private final long start;
+    private long lastTime;
+    private int sinceSnapshot;
+    private long drainTime;
+
+    /**
+     * The index of the snapshots: their times (since the start) and offsets in the file (guarded by this).
+     */
+    private long[] indexTimes = new long[64];
+    private long[] indexOffsets = new long[64];
+    private int indexSize;
+
+    private boolean stopped;
+
+    private GameJournal() {
+        logger = null;
+        channel = null;
+        clock = null;
+        snapshotInterval = 0;
+        buffer = null;
+        slotToCard = null;
+        slotTokens = null;
+        scores = null;
+        start = 0;
+    }
+
+    /**
+     * @param file - the journal file (it is overwritten).
+     * @throws IOException - if the file cannot be created.
+     */
+    public GameJournal(Logger logger, Config config, Path file) throws IOException {
+        this(logger, config, file, System::currentTimeMillis);
+    }
+
+    GameJournal(Logger logger, Config config, Path file, LongSupplier clock) throws IOException {
+        this.logger = logger;
+        this.clock = clock;
+        this.snapshotInterval = Math.max(1, config.journalSnapshotInterval);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(1 << 16);
+        this.slotToCard = new int[config.tableSize];
+        Arrays.fill(slotToCard, -1);
+        this.slotTokens = new long[config.tableSize][(config.players + Long.SIZE - 1) / Long.SIZE];
+        this.scores = new int[config.players];
+        this.start = clock.getAsLong();
+
+        buffer.putInt(MAGIC);
+        putVarLong(buffer, VERSION);
+        putVarLong(buffer, config.featureCount);
+        putVarLong(buffer, config.featureSize);
+        putVarLong(buffer, config.rows);
+        putVarLong(buffer, config.columns);
+        putVarLong(buffer, config.players);
+        putVarLong(buffer, start);
+        // an initial snapshot, so seeking never has to start before the first one
+        snapshot(0);
+    }
+
+    public synchronized void deal(int slot, int card) {
+        if (!begin(DEAL, 2)) return;
+        putVarLong(buffer, slot);
+        putVarLong(buffer, card);
+        slotToCard[slot] = card;
+        end();
+    }
+
+    public synchronized void remove(int slot) {
+        if (!begin(REMOVE, 1)) return;
+        putVarLong(buffer, slot);
+        slotToCard[slot] = -1;
+        Arrays.fill(slotTokens[slot], 0L);
+        end();
+    }
+
+    public synchronized void token(int player, int slot) {
+        if (!begin(TOKEN, 2)) return;
+        putVarLong(buffer, player);
+        putVarLong(buffer, slot);
+        slotTokens[slot][player / Long.SIZE] |= 1L << player;
+        end();
+    }
+
+    public synchronized void tokenRemoved(int player, int slot) {
+        if (!begin(TOKEN_REMOVED, 2)) return;
+        putVarLong(buffer, player);
+        putVarLong(buffer, slot);
+        slotTokens[slot][player / Long.SIZE] &= ~(1L << player);
+        end();
+    }
+
+    public synchronized void claim(int player, int[] slots, long version) {
+        if (!begin(CLAIM, 3 + slots.length)) return;
+        putVarLong(buffer, player);
+        putVarLong(buffer, version);
+        putVarLong(buffer, slots.length);
+        for (int slot : slots)
+            putVarLong(buffer, slot);
+        end();
+    }
+
+    /**
+     * @param verdict - POINT, PENALTY or STALE.
+     */
+    public synchronized void verdict(int player, int verdict) {
+        if (!begin(VERDICT, 2)) return;
+        putVarLong(buffer, player);
+        putVarLong(buffer, verdict);
+        end();
+    }
+
+    public synchronized void reshuffle() {
+        if (!begin(RESHUFFLE, 0)) return;
+        end();
+    }
+
+    public synchronized void score(int player, int score) {
+        if (!begin(SCORE, 2)) return;
+        putVarLong(buffer, player);
+        putVarLong(buffer, score);
+        scores[player] = score;
+        end();
+    }
+
+    /**
+     * Writes the index and closes the file.
+     */
+    public synchronized void close() {
+        if (channel == null || stopped) return;
+        try {
+            long indexOffset = channel.position() + buffer.position();
+            for (int i = 0; i < indexSize; i++) {
+                reserve(2 * 10);
+                putVarLong(buffer, indexTimes[i]);
+                putVarLong(buffer, indexOffsets[i]);
+            }
+            reserve(TRAILER_BYTES);
+            buffer.putLong(indexOffset);
+            buffer.putInt(indexSize);
+            buffer.putInt(INDEX_MAGIC);
+            drain();
+            channel.close();
+            stopped = true;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Starts a record (while holding the lock), making room for it and its arguments in the buffer.
+     *
+     * @return - true iff the record should be written.
+     */
+    private boolean begin(byte type, int arguments) {
+        if (channel == null || stopped) return false;
+        if (!reserve(1 + 10 * (1 + arguments))) return false;
+        long now = clock.getAsLong() - start;
+        buffer.put(type);
+        putVarLong(buffer, Math.max(0, now - lastTime));
+        lastTime = Math.max(lastTime, now);
+        return true;
+    }
+
+    /**
+     * Ends a record (while holding the lock), writing a snapshot if it is due.
+     */
+    private void end() {
+        if (++sinceSnapshot >= snapshotInterval) snapshot(lastTime);
+        else if (lastTime - drainTime >= DRAIN_MILLIS) {
+            try {
+                drain();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void snapshot(long time) {
+        sinceSnapshot = 0;
+        int words = slotTokens.length == 0 ? 0 : slotTokens[0].length;
+        if (!reserve(1 + 10 + slotToCard.length * 10 * (1 + words) + scores.length * 10)) return;
+        try {
+            long offset = channel.position() + buffer.position();
+            if (indexSize == indexTimes.length) {
+                indexTimes = Arrays.copyOf(indexTimes, indexSize * 2);
+                indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+            }
+            indexTimes[indexSize] = time;
+            indexOffsets[indexSize++] = offset;
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        buffer.put(SNAPSHOT);
+        putVarLong(buffer, 0);
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            putVarLong(buffer, slotToCard[slot] + 1);
+            for (long word : slotTokens[slot])
+                putVarLong(buffer, word);
+        }
+        for (int score : scores)
+            putVarLong(buffer, score);
+        try {
+            drain();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Makes room in the buffer, writing it to the file if needed.
+     *
+     * @return - false if writing failed.
+     */
+    private boolean reserve(int bytes) {
+        if (buffer.remaining() >= bytes) return true;
+        try {
+            drain();
+            return true;
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    private void drain() throws IOException {
+        drainTime = lastTime;
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void fail(IOException e) {
+        stopped = true;
+        logger.severe("game journal stopped: " + e.getMessage());
+    }
+}
@@ -0,0 +1,260 @@
+package bguspl.set;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Live telemetry of a game: counters, latency histograms and gauges, exported as an MXBean (see register).
+ * <p>
+ * The dealer and the players record into it on their hot paths, so recording never allocates or locks: the counters
+ * are LongAdders, the histograms are fixed arrays of atomic bucket counts, and the gauges are volatile fields.
+ * Reading (by JMX) builds summaries from a racy but consistent enough view of the buckets.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+
+    /**
+     * The object name the metrics of the game are registered under.
+     */
+    public static final String OBJECT_NAME = "bguspl.set:type=GameMetrics";
+
+    /**
+     * The counters.
+     */
+    public final LongAdder claims = new LongAdder();
+    public final LongAdder validSets = new LongAdder();
+    public final LongAdder penalties = new LongAdder();
+    public final LongAdder staleClaims = new LongAdder();
+    public final LongAdder reshuffles = new LongAdder();
+    public final LongAdder dealtCards = new LongAdder();
+
+    /**
+     * The histograms (in nanoseconds): from the key press completing a claim to its verdict, of an iteration of the
+     * dealer's timer loop (without its sleep), and of waiting to enter the dealer's monitor on a key press.
+     */
+    public final Histogram verdictLatency = new Histogram();
+    public final Histogram dealerLoopTime = new Histogram();
+    public final Histogram dealerLockWait = new Histogram();
+
+    /**
+     * The gauges: the cards left in the deck and the legal sets on the table, as of the last deal.
+     */
+    public volatile int deckSize;
+    public volatile int tableSets;
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing any metrics registered before.
+     */
+    public void register(Logger logger) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            logger.severe("cannot register the game metrics: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getClaims() {
+        return claims.sum();
+    }
+
+    @Override
+    public long getValidSets() {
+        return validSets.sum();
+    }
+
+    @Override
+    public long getPenalties() {
+        return penalties.sum();
+    }
+
+    @Override
+    public long getStaleClaims() {
+        return staleClaims.sum();
+    }
+
+    @Override
+    public long getReshuffles() {
+        return reshuffles.sum();
+    }
+
+    @Override
+    public long getDealtCards() {
+        return dealtCards.sum();
+    }
+
+    @Override
+    public int getDeckSize() {
+        return deckSize;
+    }
+
+    @Override
+    public int getTableSets() {
+        return tableSets;
+    }
+
+    @Override
+    public Summary getVerdictLatency() {
+        return verdictLatency.summary();
+    }
+
+    @Override
+    public Summary getDealerLoopTime() {
+        return dealerLoopTime.summary();
+    }
+
+    @Override
+    public Summary getDealerLockWait() {
+        return dealerLockWait.summary();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : new LongAdder[]{claims, validSets, penalties, staleClaims, reshuffles, dealtCards})
+            counter.reset();
+        verdictLatency.reset();
+        dealerLoopTime.reset();
+        dealerLockWait.reset();
+    }
+
+    /**
+     * A histogram of non negative durations with log-linear buckets, in the style of HdrHistogram: values below
+     * SUB_BUCKETS have a bucket each, and every power of two above is split into SUB_BUCKETS equal buckets, so a
+     * recorded value is off by less than 1 / SUB_BUCKETS of itself.
+     */
+    public static final class Histogram {
+
+        private static final int SUB_BITS = 4;
+        static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records a value (negative values count as 0).
+         */
+        public void record(long value) {
+            if (value < 0) value = 0;
+            counts.incrementAndGet(bucket(value));
+            total.add(value);
+            if (value > max.get()) max.accumulateAndGet(value, Math::max);
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+            int mantissa = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + mantissa;
+        }
+
+        /**
+         * @return - the lowest value of a bucket.
+         */
+        static long lowest(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+            long mantissa = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+            return (SUB_BUCKETS + mantissa) << (exponent - SUB_BITS);
+        }
+
+        /**
+         * @param percentile - between 0 and 1.
+         * @return           - the lowest value of the bucket of the percentile (0 if nothing was recorded).
+         */
+        public long percentile(double percentile) {
+            long[] snapshot = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++)
+                count += snapshot[i] = counts.get(i);
+            return percentile(snapshot, count, percentile);
+        }
+
+        private static long percentile(long[] snapshot, long count, double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile * count));
+            for (int i = 0; i < BUCKETS; i++) {
+                rank -= snapshot[i];
+                if (rank <= 0) return lowest(i);
+            }
+            return 0;
+        }
+
+        /**
+         * @return - the count, mean and percentiles of the values, converted from nanoseconds to microseconds.
+         */
+        public Summary summary() {
+            long[] snapshot = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++)
+                count += snapshot[i] = counts.get(i);
+            return new Summary(count, count == 0 ? 0 : total.sum() / 1000.0 / count,
+                    percentile(snapshot, count, 0.5) / 1000.0, percentile(snapshot, count, 0.99) / 1000.0,
+                    percentile(snapshot, count, 0.999) / 1000.0, max.get() / 1000.0);
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++)
+                counts.set(i, 0);
+            total.reset();
+            max.set(0);
+        }
+    }
+
+    /**
+     * A summary of a histogram, as JMX shows it (a composite of its getters).
+     */
+    public static final class Summary {
+
+        private final long count;
+        private final double mean, p50, p99, p999, max;
+
+        @ConstructorProperties({"count", "mean", "p50", "p99", "p999", "max"})
+        public Summary(long count, double mean, double p50, double p99, double p999, double max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public double getMax() {
+            return max;
+        }
+    }
+}
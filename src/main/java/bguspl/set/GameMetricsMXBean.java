@@ -0,0 +1,35 @@
+package bguspl.set;
+
+/**
+ * The attributes of GameMetrics, as exported through JMX.
+ * The histograms are in microseconds.
+ */
+public interface GameMetricsMXBean {
+
+    long getClaims();
+
+    long getValidSets();
+
+    long getPenalties();
+
+    long getStaleClaims();
+
+    long getReshuffles();
+
+    long getDealtCards();
+
+    int getDeckSize();
+
+    int getTableSets();
+
+    GameMetrics.Summary getVerdictLatency();
+
+    GameMetrics.Summary getDealerLoopTime();
+
+    GameMetrics.Summary getDealerLockWait();
+
+    /**
+     * Clears the counters and the histograms (the gauges keep their values).
+     */
+    void reset();
+}
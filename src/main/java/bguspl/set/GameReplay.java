@@ -0,0 +1,336 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static bguspl.set.GameJournal.*;
+import static bguspl.set.VarInts.*;
+
+/**
+ * Replays a journal written by GameJournal into a user interface, at any speed, from any point of the game.
+ * <p>
+ * The journal is memory mapped. Seeking finds the last snapshot before the target time with a binary search over the
+ * snapshot index, and replays at most config.journalSnapshotInterval records from it. A journal that was not closed
+ * (e.g. the game crashed) has no index, so it is rebuilt by scanning the journal once.
+ */
+public class GameReplay {
+
+    private final Config config;
+    private final ByteBuffer data;
+
+    /**
+     * The snapshot index: the times and the offsets of the snapshots, in order.
+     */
+    private long[] indexTimes;
+    private long[] indexOffsets;
+    private int indexSize;
+
+    /**
+     * The offset where the records end.
+     */
+    private int end;
+
+    /**
+     * The replay position: the offset of the next record and the time of the last one replayed.
+     */
+    private int position;
+    private long time;
+
+    /**
+     * The game state at the replay position.
+     */
+    private final int[] slotToCard;
+    private final long[][] slotTokens;
+    private final int[] scores;
+
+    /**
+     * @param file - the journal file.
+     * @throws IOException - if the file cannot be read, or it is not a journal.
+     */
+    public GameReplay(Logger logger, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("journal too large: " + file);
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (data.getInt() != MAGIC) throw new IOException("not a game journal: " + file);
+            long version = getVarLong(data);
+            if (version != VERSION) throw new IOException("unsupported journal version " + version + ": " + file);
+            Properties properties = new Properties();
+            properties.put("FeatureCount", Long.toString(getVarLong(data)));
+            properties.put("FeatureSize", Long.toString(getVarLong(data)));
+            properties.put("Rows", Long.toString(getVarLong(data)));
+            properties.put("Columns", Long.toString(getVarLong(data)));
+            properties.put("HumanPlayers", "0");
+            properties.put("ComputerPlayers", Long.toString(getVarLong(data)));
+            getVarLong(data); // the start time
+            config = new Config(logger, properties);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated game journal: " + file);
+        }
+        position = data.position();
+
+        slotToCard = new int[config.tableSize];
+        slotTokens = new long[config.tableSize][(config.players + Long.SIZE - 1) / Long.SIZE];
+        scores = new int[config.players];
+        if (!readIndex()) rebuildIndex();
+        if (indexSize == 0) throw new IOException("empty game journal: " + file);
+        seek(0, null);
+    }
+
+    /**
+     * @return - the configuration of the journaled game.
+     */
+    public Config config() {
+        return config;
+    }
+
+    /**
+     * @return - the time of the last replayed record, in milliseconds since the start of the game.
+     */
+    public long time() {
+        return time;
+    }
+
+    /**
+     * @return - the number of snapshots in the journal.
+     */
+    public int snapshots() {
+        return indexSize;
+    }
+
+    public int cardAt(int slot) {
+        return slotToCard[slot];
+    }
+
+    public boolean hasToken(int player, int slot) {
+        return (slotTokens[slot][player / Long.SIZE] & (1L << player)) != 0;
+    }
+
+    public int score(int player) {
+        return scores[player];
+    }
+
+    /**
+     * Moves the replay to a point of the game, and shows the game state at that point.
+     *
+     * @param millis - the time to seek to, in milliseconds since the start of the game.
+     * @param ui     - the user interface to show the state on (null for none).
+     */
+    public void seek(long millis, UserInterface ui) {
+        // the last snapshot at or before the target time
+        int low = 0, high = indexSize - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (indexTimes[middle] <= millis) low = middle;
+            else high = middle - 1;
+        }
+        position = (int) indexOffsets[low];
+        time = indexTimes[low];
+        while (position < end && nextTime() <= millis)
+            step(null);
+        if (ui != null) show(ui);
+    }
+
+    /**
+     * Replays the next record into a user interface.
+     *
+     * @param ui - the user interface to replay into (null for none).
+     * @return - false if there are no more records.
+     */
+    public boolean step(UserInterface ui) {
+        if (position >= end) return false;
+        data.position(position);
+        byte type = data.get();
+        time += getVarLong(data);
+        int player, slot;
+        switch (type) {
+            case DEAL:
+                slot = (int) getVarLong(data);
+                slotToCard[slot] = (int) getVarLong(data);
+                if (ui != null) ui.placeCard(slotToCard[slot], slot);
+                break;
+            case REMOVE:
+                slot = (int) getVarLong(data);
+                slotToCard[slot] = -1;
+                Arrays.fill(slotTokens[slot], 0L);
+                if (ui != null) {
+                    ui.removeTokens(slot);
+                    ui.removeCard(slot);
+                }
+                break;
+            case TOKEN:
+                player = (int) getVarLong(data);
+                slot = (int) getVarLong(data);
+                slotTokens[slot][player / Long.SIZE] |= 1L << player;
+                if (ui != null) ui.placeToken(player, slot);
+                break;
+            case TOKEN_REMOVED:
+                player = (int) getVarLong(data);
+                slot = (int) getVarLong(data);
+                slotTokens[slot][player / Long.SIZE] &= ~(1L << player);
+                if (ui != null) ui.removeToken(player, slot);
+                break;
+            case CLAIM:
+                getVarLong(data); // the player
+                getVarLong(data); // the table version
+                for (long slots = getVarLong(data); slots > 0; slots--)
+                    getVarLong(data);
+                break;
+            case VERDICT:
+                getVarLong(data); // the player
+                getVarLong(data); // the verdict
+                break;
+            case RESHUFFLE:
+                break;
+            case SCORE:
+                player = (int) getVarLong(data);
+                scores[player] = (int) getVarLong(data);
+                if (ui != null) ui.setScore(player, scores[player]);
+                break;
+            case SNAPSHOT:
+                readSnapshot();
+                if (ui != null) show(ui);
+                break;
+            default:
+                throw new IllegalStateException("unknown journal record " + type + " at offset " + position);
+        }
+        position = data.position();
+        return true;
+    }
+
+    /**
+     * Replays the records into a user interface in real time, scaled by a speed factor.
+     *
+     * @param ui    - the user interface to replay into.
+     * @param speed - the replay speed (2 for twice as fast as the game was played).
+     * @throws InterruptedException - if interrupted while waiting for the next record.
+     */
+    public void play(UserInterface ui, double speed) throws InterruptedException {
+        long startTime = time;
+        long startMillis = System.currentTimeMillis();
+        while (position < end) {
+            long due = startMillis + (long) ((nextTime() - startTime) / speed);
+            long wait = due - System.currentTimeMillis();
+            if (wait > 0) Thread.sleep(wait);
+            step(ui);
+        }
+    }
+
+    /**
+     * Replays a journal on the terminal.
+     *
+     * @param args - the journal file, the replay speed (default: 1) and the time to start from in seconds (default: 0).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("usage: GameReplay <journal file> [speed] [start seconds]");
+            return;
+        }
+        Logger logger = Logger.getLogger("GameReplay");
+        logger.setUseParentHandlers(false);
+        GameReplay replay = new GameReplay(logger, Paths.get(args[0]));
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        long from = args.length > 2 ? (long) (Double.parseDouble(args[2]) * 1000) : 0;
+
+        UserInterface ui = new UserInterfaceTerminal(replay.config(), System.out);
+        replay.seek(from, ui);
+        replay.play(ui, speed);
+        ui.dispose();
+    }
+
+    /**
+     * @return - the time of the next record (while not at the end).
+     */
+    private long nextTime() {
+        data.position(position + 1);
+        return time + getVarLong(data);
+    }
+
+    /**
+     * Shows the whole state on a user interface.
+     */
+    private void show(UserInterface ui) {
+        ui.removeTokens();
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            if (slotToCard[slot] == -1) ui.removeCard(slot);
+            else ui.placeCard(slotToCard[slot], slot);
+            for (int player = 0; player < scores.length; player++)
+                if (hasToken(player, slot)) ui.placeToken(player, slot);
+        }
+        for (int player = 0; player < scores.length; player++)
+            ui.setScore(player, scores[player]);
+    }
+
+    private void readSnapshot() {
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            slotToCard[slot] = (int) getVarLong(data) - 1;
+            for (int word = 0; word < slotTokens[slot].length; word++)
+                slotTokens[slot][word] = getVarLong(data);
+        }
+        for (int player = 0; player < scores.length; player++)
+            scores[player] = (int) getVarLong(data);
+    }
+
+    /**
+     * Reads the index written when the journal was closed, and where the records end.
+     *
+     * @return - false if there is no index.
+     */
+    private boolean readIndex() {
+        int size = data.capacity();
+        if (size - position < TRAILER_BYTES) return false;
+        long indexOffset = data.getLong(size - TRAILER_BYTES);
+        int count = data.getInt(size - Integer.BYTES * 2);
+        if (data.getInt(size - Integer.BYTES) != INDEX_MAGIC || indexOffset < position || indexOffset > size - TRAILER_BYTES || count <= 0)
+            return false;
+
+        indexTimes = new long[count];
+        indexOffsets = new long[count];
+        data.position((int) indexOffset);
+        for (int i = 0; i < count; i++) {
+            indexTimes[i] = getVarLong(data);
+            indexOffsets[i] = getVarLong(data);
+        }
+        indexSize = count;
+        end = (int) indexOffset;
+        return true;
+    }
+
+    /**
+     * Scans the records to rebuild the index, up to the last complete record.
+     */
+    private void rebuildIndex() {
+        indexTimes = new long[64];
+        indexOffsets = new long[64];
+        int offset = position;
+        end = data.capacity();
+        try {
+            while (offset < end) {
+                byte type = data.get(offset);
+                step(null);
+                if (type == SNAPSHOT) {
+                    if (indexSize == indexTimes.length) {
+                        indexTimes = Arrays.copyOf(indexTimes, indexSize * 2);
+                        indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+                    }
+                    indexTimes[indexSize] = time;
+                    indexOffsets[indexSize++] = offset;
+                }
+                offset = position;
+            }
+        } catch (BufferUnderflowException | IllegalStateException | ArrayIndexOutOfBoundsException e) {
+            // a record cut off by a crash
+        }
+        end = offset;
+    }
+}
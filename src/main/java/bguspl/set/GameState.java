@@ -0,0 +1,278 @@
+package bguspl.set;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The primitive state of a game, as one fixed size record in a ByteBuffer: the card per slot and the version each slot
+ * was last changed at, the slot per card, the deck, and per player the token mask, the score and the freeze deadline.
+ * <p>
+ * The record of a game is on the heap (a buffer of its own), or with config.offHeapState a record of a
+ * GameStateArena shared by all the games in the process, so the heap does not grow with the number of live games.
+ * Either way the table, the dealer and the players read and write the state through this view, with the locking
+ * they use for the fields it replaces (the view itself does no synchronization).
+ */
+public class GameState {
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private final GameStateArena arena;
+    private final int record;
+    private boolean released;
+
+    private final int tableSize;
+    private final int deckSize;
+    private final int players;
+    private final int tokenWords;
+
+    /**
+     * The offsets of the fields in the record, the 8 byte fields first so they are aligned.
+     */
+    private final int slotVersionsAt;
+    private final int tokensAt;
+    private final int freezesAt;
+    private final int slotCardsAt;
+    private final int cardSlotsAt;
+    private final int scoresAt;
+    private final int deckSizeAt;
+    private final int deckAt;
+    private final int end;
+
+    private final Deck deck = new Deck();
+
+    /**
+     * @param buffer - the buffer the record is in.
+     * @param base   - the offset of the record in the buffer.
+     * @param arena  - the arena to release the record to (null if the record is not from an arena).
+     * @param record - the index of the record in the arena.
+     */
+    GameState(Config config, ByteBuffer buffer, int base, GameStateArena arena, int record) {
+        this.buffer = buffer;
+        this.base = base;
+        this.arena = arena;
+        this.record = record;
+
+        tableSize = config.tableSize;
+        deckSize = config.deckSize;
+        players = config.players;
+        tokenWords = (tableSize + Long.SIZE - 1) / Long.SIZE;
+
+        slotVersionsAt = base;
+        tokensAt = slotVersionsAt + Long.BYTES * tableSize;
+        freezesAt = tokensAt + Long.BYTES * tokenWords * players;
+        slotCardsAt = freezesAt + Long.BYTES * players;
+        cardSlotsAt = slotCardsAt + Integer.BYTES * tableSize;
+        scoresAt = cardSlotsAt + Integer.BYTES * deckSize;
+        deckSizeAt = scoresAt + Integer.BYTES * players;
+        deckAt = deckSizeAt + Integer.BYTES;
+        end = deckAt + Integer.BYTES * deckSize;
+        clear();
+    }
+
+    /**
+     * @return - the size of the record of a game with the given config, in bytes (a multiple of 8).
+     */
+    static int recordBytes(Config config) {
+        int tokenWords = (config.tableSize + Long.SIZE - 1) / Long.SIZE;
+        int longs = config.tableSize + tokenWords * config.players + config.players;
+        int ints = config.tableSize + config.deckSize + config.players + 1 + config.deckSize;
+        return (Long.BYTES * longs + Integer.BYTES * ints + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    /**
+     * @return - the state of a new game: a record of the shared arena with config.offHeapState, or else on the heap.
+     */
+    public static GameState create(Config config) {
+        if (config.offHeapState) return GameStateArena.shared(config).allocate(config);
+        return new GameState(config, ByteBuffer.allocate(recordBytes(config)).order(ByteOrder.nativeOrder()), 0, null, -1);
+    }
+
+    /**
+     * Returns the record to its arena, if it came from one. The state must not be used afterwards.
+     */
+    public synchronized void release() {
+        if (released) return;
+        released = true;
+        if (arena != null) arena.release(record);
+    }
+
+    /**
+     * Resets the record: no cards on the table, an empty deck, no tokens, no scores and no freezes.
+     */
+    private void clear() {
+        for (int offset = base; offset < end; offset += Integer.BYTES)
+            buffer.putInt(offset, 0);
+        for (int slot = 0; slot < tableSize; slot++)
+            buffer.putInt(slotCardsAt + Integer.BYTES * slot, -1);
+        for (int card = 0; card < deckSize; card++)
+            buffer.putInt(cardSlotsAt + Integer.BYTES * card, -1);
+        for (int player = 0; player < players; player++)
+            buffer.putLong(freezesAt + Long.BYTES * player, Long.MAX_VALUE);
+    }
+
+    /**
+     * The slot map: the card per slot (-1 if none) and the table version the slot was last changed at.
+     */
+    public int slotCard(int slot) {
+        return buffer.getInt(slotCardsAt + Integer.BYTES * slot);
+    }
+
+    public void setSlotCard(int slot, int card) {
+        buffer.putInt(slotCardsAt + Integer.BYTES * slot, card);
+    }
+
+    public long slotVersion(int slot) {
+        return buffer.getLong(slotVersionsAt + Long.BYTES * slot);
+    }
+
+    public void setSlotVersion(int slot, long version) {
+        buffer.putLong(slotVersionsAt + Long.BYTES * slot, version);
+    }
+
+    /**
+     * The card map: the slot per card (-1 if the card is not on the table).
+     */
+    public int cardSlot(int card) {
+        return buffer.getInt(cardSlotsAt + Integer.BYTES * card);
+    }
+
+    public void setCardSlot(int card, int slot) {
+        buffer.putInt(cardSlotsAt + Integer.BYTES * card, slot);
+    }
+
+    /**
+     * @return - the deck, as a list view of the record (it holds up to config.deckSize cards).
+     */
+    public List<Integer> deck() {
+        return deck;
+    }
+
+    /**
+     * The token masks: the slots each player has a token on.
+     */
+    public boolean hasToken(int player, int slot) {
+        return (tokenWord(player, slot) & 1L << slot) != 0;
+    }
+
+    public void setToken(int player, int slot, boolean token) {
+        int offset = tokensAt + Long.BYTES * (tokenWords * player + slot / Long.SIZE);
+        long word = buffer.getLong(offset);
+        buffer.putLong(offset, token ? word | 1L << slot : word & ~(1L << slot));
+    }
+
+    public int tokenCount(int player) {
+        int count = 0;
+        for (int word = 0; word < tokenWords; word++)
+            count += Long.bitCount(buffer.getLong(tokensAt + Long.BYTES * (tokenWords * player + word)));
+        return count;
+    }
+
+    /**
+     * @return - the slot of the index-th token of a player, in slot order (-1 if the player has fewer tokens).
+     */
+    public int tokenSlot(int player, int index) {
+        for (int word = 0; word < tokenWords; word++) {
+            long tokens = buffer.getLong(tokensAt + Long.BYTES * (tokenWords * player + word));
+            int count = Long.bitCount(tokens);
+            if (index < count) {
+                for (; index > 0; index--)
+                    tokens &= tokens - 1;
+                return word * Long.SIZE + Long.numberOfTrailingZeros(tokens);
+            }
+            index -= count;
+        }
+        return -1;
+    }
+
+    public void clearTokens(int player) {
+        for (int word = 0; word < tokenWords; word++)
+            buffer.putLong(tokensAt + Long.BYTES * (tokenWords * player + word), 0);
+    }
+
+    private long tokenWord(int player, int slot) {
+        return buffer.getLong(tokensAt + Long.BYTES * (tokenWords * player + slot / Long.SIZE));
+    }
+
+    /**
+     * The score of each player.
+     */
+    public int score(int player) {
+        return buffer.getInt(scoresAt + Integer.BYTES * player);
+    }
+
+    public void setScore(int player, int score) {
+        buffer.putInt(scoresAt + Integer.BYTES * player, score);
+    }
+
+    /**
+     * The time each player is frozen until (Long.MAX_VALUE if not frozen).
+     */
+    public long freezeUntil(int player) {
+        return buffer.getLong(freezesAt + Long.BYTES * player);
+    }
+
+    public void setFreezeUntil(int player, long millis) {
+        buffer.putLong(freezesAt + Long.BYTES * player, millis);
+    }
+
+    /**
+     * The deck in the record: its size followed by its cards.
+     */
+    private class Deck extends AbstractList<Integer> implements RandomAccess {
+
+        @Override
+        public int size() {
+            return buffer.getInt(deckSizeAt);
+        }
+
+        @Override
+        public Integer get(int index) {
+            checkIndex(index, size());
+            return buffer.getInt(deckAt + Integer.BYTES * index);
+        }
+
+        @Override
+        public Integer set(int index, Integer card) {
+            int previous = get(index);
+            buffer.putInt(deckAt + Integer.BYTES * index, card);
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Integer card) {
+            int size = size();
+            checkIndex(index, size + 1);
+            if (size == deckSize) throw new IllegalStateException("the deck is full");
+            for (int i = size; i > index; i--)
+                buffer.putInt(deckAt + Integer.BYTES * i, buffer.getInt(deckAt + Integer.BYTES * (i - 1)));
+            buffer.putInt(deckAt + Integer.BYTES * index, card);
+            buffer.putInt(deckSizeAt, size + 1);
+            modCount++;
+        }
+
+        @Override
+        public Integer remove(int index) {
+            int size = size();
+            int card = get(index);
+            for (int i = index; i < size - 1; i++)
+                buffer.putInt(deckAt + Integer.BYTES * i, buffer.getInt(deckAt + Integer.BYTES * (i + 1)));
+            buffer.putInt(deckSizeAt, size - 1);
+            modCount++;
+            return card;
+        }
+
+        @Override
+        public void clear() {
+            buffer.putInt(deckSizeAt, 0);
+            modCount++;
+        }
+
+        private void checkIndex(int index, int size) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package bguspl.set;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed size GameState records in direct (off heap) buffers, shared by the games in the process.
+ * <p>
+ * The records are allocated in chunks of config.stateArenaGames records, and the records of the games that ended are
+ * reused, so the arena grows with the most games live at once and a game adds nothing to the heap but its view.
+ * There is an arena per record size (i.e. per shape of game).
+ */
+public class GameStateArena {
+
+    private static final Map<Integer, GameStateArena> arenas = new HashMap<>();
+
+    private final int recordBytes;
+    private final int recordsPerChunk;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * The released records to reuse, and the number of records ever handed out (guarded by this).
+     */
+    private int[] free = new int[16];
+    private int freeCount;
+    private int allocated;
+    private int live;
+
+    GameStateArena(int recordBytes, int recordsPerChunk) {
+        this.recordBytes = recordBytes;
+        this.recordsPerChunk = Math.max(1, recordsPerChunk);
+    }
+
+    /**
+     * @return - the arena shared by the games with the record size of the given config.
+     */
+    public static GameStateArena shared(Config config) {
+        int recordBytes = GameState.recordBytes(config);
+        synchronized (arenas) {
+            return arenas.computeIfAbsent(recordBytes, ignored -> new GameStateArena(recordBytes, config.stateArenaGames));
+        }
+    }
+
+    /**
+     * @return - the cleared state of a new game, in a record of this arena (release it when the game is over).
+     */
+    public synchronized GameState allocate(Config config) {
+        if (GameState.recordBytes(config) != recordBytes)
+            throw new IllegalArgumentException("the game does not fit the records of this arena");
+        int record = freeCount > 0 ? free[--freeCount] : allocated++;
+        int chunk = record / recordsPerChunk;
+        if (chunk == chunks.size())
+            chunks.add(ByteBuffer.allocateDirect(recordBytes * recordsPerChunk).order(ByteOrder.nativeOrder()));
+        live++;
+        return new GameState(config, chunks.get(chunk), recordBytes * (record % recordsPerChunk), this, record);
+    }
+
+    synchronized void release(int record) {
+        if (freeCount == free.length) free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = record;
+        live--;
+    }
+
+    /**
+     * @return - the number of records in use.
+     */
+    public synchronized int liveRecords() {
+        return live;
+    }
+
+    /**
+     * @return - the off heap bytes the arena holds.
+     */
+    public synchronized long capacityBytes() {
+        return (long) chunks.size() * recordsPerChunk * recordBytes;
+    }
+}
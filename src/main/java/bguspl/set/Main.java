@@ -4,8 +4,11 @@ import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Table;
 
+import java.awt.GraphicsEnvironment;
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -43,21 +46,43 @@ public class Main {
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
-        Util util = new UtilImpl(config);
+        Util util = new UtilImpl(config, ComplementTable.shared(config, logger));
 
         Player[] players = new Player[config.players];
         UserInterface ui = null;
         try {
+            // skip the swing startup cost when there is no display anyway
+            if (GraphicsEnvironment.isHeadless()) throw new UnsupportedOperationException("no display");
             ui = new UserInterfaceSwing(logger, config, players);
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
+            if (System.console() != null) {
+                logger.severe("will run with a terminal user interface");
+                ui = new UserInterfaceTerminal(config, System.out);
+            } else logger.severe("will try to run without user interface");
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        if (config.spectatorPort > 0) {
+            try {
+                ui = new SpectatorBroadcaster(logger, config, ui, new InetSocketAddress(config.spectatorPort));
+            } catch (IOException e) {
+                logger.severe("cannot broadcast to spectators: " + e.getMessage());
+            }
+        }
+        ui = new UserInterfaceScheduler(config, new UserInterfaceDecorator(logger, util, ui));
+
+        GameJournal journal = GameJournal.NONE;
+        if (!config.journalFile.isEmpty()) {
+            try {
+                journal = new GameJournal(logger, config, Paths.get(config.journalFile));
+            } catch (IOException e) {
+                logger.severe("cannot record the game journal: " + e.getMessage());
+            }
+        }
 
-        Env env = new Env(logger, config, ui, util);
+        Env env = new Env(logger, config, ui, util, journal);
+        env.metrics.register(logger);
 
         // create the game entities
         Table table = new Table(env);
@@ -66,6 +91,7 @@ public class Main {
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
         // start the dealer thread
+        ThreadLogger.startAccounting(logger, config.threadReportMillis);
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
         dealerThread.startWithLog();
 
@@ -78,7 +104,10 @@ public class Main {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            ThreadLogger.reportAccounting(logger);
             if (!xButtonPressed) env.ui.dispose();
+            env.journal.close();
+            env.state.release();
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
@@ -87,11 +116,11 @@ public class Main {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        Handler handler;
         try {
             //noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            handler = new AsyncLogHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -108,10 +137,11 @@ public class Main {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+            // called by the log writer thread only, see AsyncLogHandler
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) {
                 return String.format(format, new Date(lr.getMillis()),
-                        lr.getLevel().getLocalizedName(), lr.getMessage()
+                        lr.getLevel().getLocalizedName(), formatMessage(lr)
                 );
             }
         }));
@@ -0,0 +1,136 @@
+package bguspl.set;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * All the legal sets of a deck of up to 128 cards with 3 values per feature (e.g. the 1080 sets of the stock 81 card
+ * deck), as 128 bit card masks: bit c of the low word (c < 64) or bit c - 64 of the high word is set iff card c is in
+ * the set. Whether a collection of cards has a set is then a scan of the masks for one contained in the mask of the
+ * collection, with no allocation and no search.
+ * <p>
+ * The masks are kept in two parallel arrays (low and high words), so the scan is a tight loop of ANDs and compares.
+ */
+public class SetMasks {
+
+    /**
+     * The shared masks, one per deck shape (feature count).
+     */
+    private static final Map<Integer, SetMasks> masks = new HashMap<>();
+
+    private final long[] lows;
+    private final long[] highs;
+
+    SetMasks(Config config) {
+        int deckSize = config.deckSize;
+        int count = deckSize * (deckSize - 1) / 6; // every pair of cards is in exactly one set
+        lows = new long[count];
+        highs = new long[count];
+
+        int line = 0;
+        for (int card1 = 0; card1 < deckSize; card1++)
+            for (int card2 = card1 + 1; card2 < deckSize; card2++) {
+                int card3 = complement(card1, card2, config.featureCount);
+                if (card3 <= card2) continue; // count each set once, from its two lowest cards
+                long low = 0, high = 0;
+                for (int card : new int[]{card1, card2, card3}) {
+                    if (card < Long.SIZE) low |= 1L << card;
+                    else high |= 1L << card - Long.SIZE;
+                }
+                lows[line] = low;
+                highs[line] = high;
+                line++;
+            }
+    }
+
+    /**
+     * @return - the masks shared by the games with the deck of the given config (null if the deck has more than 128
+     *           cards or not 3 values per feature).
+     */
+    public static SetMasks of(Config config) {
+        if (config.featureSize != 3 || config.deckSize > 2 * Long.SIZE) return null;
+        synchronized (masks) {
+            return masks.computeIfAbsent(config.featureCount, ignored -> new SetMasks(config));
+        }
+    }
+
+    /**
+     * @return - the number of legal sets in the deck.
+     */
+    public int lines() {
+        return lows.length;
+    }
+
+    /**
+     * Checks if there is a legal set in a collection of cards.
+     *
+     * @param low  - the mask of the cards 0 to 63 in the collection.
+     * @param high - the mask of the cards 64 to 127 in the collection.
+     * @return     - true iff all the cards of at least one legal set are in the collection.
+     */
+    public boolean hasSet(long low, long high) {
+        for (int line = 0; line < lows.length; line++)
+            if ((lows[line] & ~low | highs[line] & ~high) == 0) return true;
+        return false;
+    }
+
+    /**
+     * @return - the number of legal sets in a collection of cards (see hasSet).
+     */
+    public int countSets(long low, long high) {
+        int count = 0;
+        for (int line = 0; line < lows.length; line++)
+            count += (lows[line] & ~low | highs[line] & ~high) == 0 ? 1 : 0;
+        return count;
+    }
+
+    /**
+     * @param cards - the card per slot (-1 if none).
+     * @return      - true iff there is a legal set in the cards.
+     */
+    public boolean hasSet(int[] cards) {
+        long low = 0, high = 0;
+        for (int card : cards) {
+            low = withLow(low, card);
+            high = withHigh(high, card);
+        }
+        return hasSet(low, high);
+    }
+
+    /**
+     * @param cards - the card per slot (-1 if none).
+     * @return      - the number of legal sets in the cards.
+     */
+    public int countSets(int[] cards) {
+        long low = 0, high = 0;
+        for (int card : cards) {
+            low = withLow(low, card);
+            high = withHigh(high, card);
+        }
+        return countSets(low, high);
+    }
+
+    /**
+     * @return - the given low mask with the card added, if it is one of the cards 0 to 63.
+     */
+    public static long withLow(long low, int card) {
+        return card >= 0 && card < Long.SIZE ? low | 1L << card : low;
+    }
+
+    /**
+     * @return - the given high mask with the card added, if it is one of the cards 64 to 127.
+     */
+    public static long withHigh(long high, int card) {
+        return card >= Long.SIZE ? high | 1L << card - Long.SIZE : high;
+    }
+
+    /**
+     * @return - the card that completes the two given distinct cards to a legal set.
+     */
+    private static int complement(int card1, int card2, int featureCount) {
+        int card = 0;
+        for (int i = 0, weight = 1; i < featureCount; i++, weight *= 3)
+            card += (6 - card1 / weight % 3 - card2 / weight % 3) % 3 * weight;
+        return card;
+    }
+}
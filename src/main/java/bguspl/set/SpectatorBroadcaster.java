@@ -0,0 +1,463 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static bguspl.set.VarInts.*;
+
+/**
+ * Broadcasts the user interface events to spectators connected to a socket, and passes them on to the wrapped user
+ * interface (if any).
+ * <p>
+ * The events are encoded as a compact binary stream: an opcode byte followed by varint arguments, where times and
+ * scores are sent as the (zigzag encoded) difference from their previous value, and events that change nothing are
+ * not sent at all. A new spectator first gets a snapshot of the whole game state. See SpectatorView for the decoder.
+ * <p>
+ * The game threads only encode the events into a buffer. A single network thread sends them to all the spectators
+ * config.uiRefreshHz times per second, without blocking. The updates queued for a spectator are bounded by
+ * config.spectatorBufferKilobytes: if a spectator falls behind, its queue is dropped and it gets a snapshot instead.
+ */
+public class SpectatorBroadcaster implements UserInterface {
+
+    /**
+     * The opcodes of the stream.
+     */
+    static final byte SNAPSHOT = 0;
+    static final byte PLACE_CARD = 1;
+    static final byte REMOVE_CARD = 2;
+    static final byte PLACE_TOKEN = 3;
+    static final byte REMOVE_TOKEN = 4;
+    static final byte REMOVE_ALL_TOKENS = 5;
+    static final byte REMOVE_SLOT_TOKENS = 6;
+    static final byte COUNTDOWN = 7;
+    static final byte ELAPSED = 8;
+    static final byte FREEZE = 9;
+    static final byte SCORE = 10;
+    static final byte WINNERS = 11;
+
+    /**
+     * The maximal size of an event other than a snapshot or a winners announcement.
+     */
+    private static final int MAX_EVENT_BYTES = 1 + 3 * 10;
+
+    private final Logger logger;
+    private final UserInterface ui;
+    private final int bufferBytes;
+    private final long periodMillis;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private volatile boolean terminate;
+
+    /**
+     * The game state as sent in the stream so far (guarded by this).
+     */
+    private final int[] slotToCard;
+    private final long[][] slotTokens;
+    private final int[] scores;
+    private final long[] freezes;
+    private long countdown;
+    private long elapsed;
+    private int[] winners;
+
+    /**
+     * The events encoded since the last time they were sent (guarded by this). If they do not fit, they are dropped
+     * and all the spectators get a snapshot instead.
+     */
+    private final ByteBuffer pending;
+    private boolean overflow;
+
+    /**
+     * The connected spectators (accessed by the network thread only).
+     */
+    private final List<Spectator> spectators = new ArrayList<>();
+
+    private static class Spectator {
+        final SocketChannel channel;
+        final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        int queuedBytes;
+        boolean needsSnapshot = true;
+
+        Spectator(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * @param ui      - the user interface to pass the events on to (null for none).
+     * @param address - the address to listen on for spectators.
+     * @throws IOException - if the address cannot be bound.
+     */
+    public SpectatorBroadcaster(Logger logger, Config config, UserInterface ui, InetSocketAddress address) throws IOException {
+        this.logger = logger;
+        this.ui = ui;
+        this.bufferBytes = Math.max(config.spectatorBufferKilobytes * 1024, 1024);
+        this.periodMillis = Math.max(1, 1000 / Math.max(1, config.uiRefreshHz));
+        this.slotToCard = new int[config.tableSize];
+        Arrays.fill(slotToCard, -1);
+        this.slotTokens = new long[config.tableSize][(config.players + Long.SIZE - 1) / Long.SIZE];
+        this.scores = new int[config.players];
+        this.freezes = new long[config.players];
+        this.pending = ByteBuffer.allocate(bufferBytes);
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        thread = new Thread(this::run, "spectators");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("broadcasting to spectators on port " + port());
+    }
+
+    /**
+     * @return - the port spectators connect to.
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        synchronized (this) {
+            if (slotToCard[slot] != card && reserve(MAX_EVENT_BYTES)) {
+                pending.put(PLACE_CARD);
+                putVarLong(pending, slot);
+                putVarLong(pending, card);
+            }
+            slotToCard[slot] = card;
+        }
+        if (ui != null) ui.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        synchronized (this) {
+            if (slotToCard[slot] != -1 && reserve(MAX_EVENT_BYTES)) {
+                pending.put(REMOVE_CARD);
+                putVarLong(pending, slot);
+            }
+            slotToCard[slot] = -1;
+        }
+        if (ui != null) ui.removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        synchronized (this) {
+            long bit = 1L << player;
+            if ((slotTokens[slot][player / Long.SIZE] & bit) == 0 && reserve(MAX_EVENT_BYTES)) {
+                pending.put(PLACE_TOKEN);
+                putVarLong(pending, player);
+                putVarLong(pending, slot);
+            }
+            slotTokens[slot][player / Long.SIZE] |= bit;
+        }
+        if (ui != null) ui.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        synchronized (this) {
+            if (reserve(MAX_EVENT_BYTES))
+                pending.put(REMOVE_ALL_TOKENS);
+            for (long[] tokens : slotTokens)
+                Arrays.fill(tokens, 0L);
+        }
+        if (ui != null) ui.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        synchronized (this) {
+            if (reserve(MAX_EVENT_BYTES)) {
+                pending.put(REMOVE_SLOT_TOKENS);
+                putVarLong(pending, slot);
+            }
+            Arrays.fill(slotTokens[slot], 0L);
+        }
+        if (ui != null) ui.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        synchronized (this) {
+            long bit = 1L << player;
+            if ((slotTokens[slot][player / Long.SIZE] & bit) != 0 && reserve(MAX_EVENT_BYTES)) {
+                pending.put(REMOVE_TOKEN);
+                putVarLong(pending, player);
+                putVarLong(pending, slot);
+            }
+            slotTokens[slot][player / Long.SIZE] &= ~bit;
+        }
+        if (ui != null) ui.removeToken(player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        synchronized (this) {
+            if (reserve(MAX_EVENT_BYTES)) {
+                pending.put(COUNTDOWN);
+                putVarLong(pending, zigzag(millies - countdown) << 1 | (warn ? 1 : 0));
+            }
+            countdown = millies;
+        }
+        if (ui != null) ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        synchronized (this) {
+            if (elapsed != millies && reserve(MAX_EVENT_BYTES)) {
+                pending.put(ELAPSED);
+                putVarLong(pending, zigzag(millies - elapsed));
+            }
+            elapsed = millies;
+        }
+        if (ui != null) ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        synchronized (this) {
+            if (freezes[player] != millies && reserve(MAX_EVENT_BYTES)) {
+                pending.put(FREEZE);
+                putVarLong(pending, player);
+                putVarLong(pending, zigzag(millies - freezes[player]));
+            }
+            freezes[player] = millies;
+        }
+        if (ui != null) ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        synchronized (this) {
+            if (scores[player] != score && reserve(MAX_EVENT_BYTES)) {
+                pending.put(SCORE);
+                putVarLong(pending, player);
+                putVarLong(pending, zigzag(score - scores[player]));
+            }
+            scores[player] = score;
+        }
+        if (ui != null) ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        synchronized (this) {
+            winners = players.clone();
+            // a snapshot carries the winners in case they do not fit
+            if (reserve(MAX_EVENT_BYTES + players.length * 5)) putWinners(pending, players);
+        }
+        if (ui != null) ui.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        terminate = true;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException ignored) {}
+        if (ui != null) ui.dispose();
+    }
+
+    /**
+     * Makes room for an event in the pending buffer (while holding the lock).
+     *
+     * @return - true iff the event should be encoded, false if the pending events overflowed.
+     */
+    private boolean reserve(int bytes) {
+        if (overflow) return false;
+        if (pending.remaining() >= bytes) return true;
+        pending.clear();
+        overflow = true;
+        return false;
+    }
+
+    private void run() {
+        try {
+            while (!terminate) {
+                selector.select(periodMillis);
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else if (key.isReadable()) read(key);
+                    else if (key.isWritable()) write((Spectator) key.attachment());
+                }
+                broadcast();
+            }
+        } catch (IOException e) {
+            logger.severe("spectator broadcasting stopped: " + e.getMessage());
+        } finally {
+            for (Spectator spectator : spectators)
+                close(spectator);
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Spectator spectator = new Spectator(channel);
+        channel.register(selector, SelectionKey.OP_READ, spectator);
+        spectators.add(spectator);
+        logger.info("spectator connected from " + channel.getRemoteAddress());
+    }
+
+    /**
+     * Spectators do not send anything, reading only detects when they disconnect.
+     */
+    private void read(SelectionKey key) {
+        Spectator spectator = (Spectator) key.attachment();
+        ByteBuffer discard = ByteBuffer.allocate(256);
+        try {
+            if (spectator.channel.read(discard) == -1) close(spectator);
+        } catch (IOException e) {
+            close(spectator);
+        }
+    }
+
+    /**
+     * Takes the pending events (and a snapshot if any spectator needs one) and queues them for the spectators.
+     */
+    private void broadcast() {
+        boolean needsSnapshot = false;
+        for (Spectator spectator : spectators)
+            needsSnapshot |= spectator.needsSnapshot;
+
+        ByteBuffer events = null;
+        ByteBuffer snapshot = null;
+        synchronized (this) {
+            if (overflow) {
+                for (Spectator spectator : spectators)
+                    spectator.needsSnapshot = true;
+                needsSnapshot = !spectators.isEmpty();
+                overflow = false;
+            } else if (pending.position() > 0 && !spectators.isEmpty()) {
+                pending.flip();
+                events = ByteBuffer.allocate(pending.remaining()).put(pending);
+                events.flip();
+            }
+            pending.clear();
+            if (needsSnapshot) snapshot = snapshot();
+        }
+
+        for (Spectator spectator : new ArrayList<>(spectators)) {
+            if (spectator.needsSnapshot) {
+                // the snapshot replaces everything that was not sent yet
+                dropQueue(spectator);
+                enqueue(spectator, snapshot.duplicate());
+                spectator.needsSnapshot = false;
+            } else if (events != null) {
+                if (spectator.queuedBytes + events.remaining() > bufferBytes) {
+                    // too slow, drop its queue and send it a snapshot next time
+                    dropQueue(spectator);
+                    spectator.needsSnapshot = true;
+                    continue;
+                }
+                enqueue(spectator, events.duplicate());
+            }
+            write(spectator);
+        }
+    }
+
+    /**
+     * Drops the queue of a spectator, except for a partially sent buffer (which must be completed to keep the stream
+     * in sync).
+     */
+    private void dropQueue(Spectator spectator) {
+        ByteBuffer head = spectator.queue.peek();
+        spectator.queue.clear();
+        spectator.queuedBytes = 0;
+        if (head != null && head.position() > 0) enqueue(spectator, head);
+    }
+
+    private void enqueue(Spectator spectator, ByteBuffer buffer) {
+        spectator.queue.add(buffer);
+        spectator.queuedBytes += buffer.remaining();
+    }
+
+    /**
+     * Writes as much of the queue of a spectator as the socket accepts, and waits for the socket to be writable if
+     * anything is left.
+     */
+    private void write(Spectator spectator) {
+        try {
+            while (!spectator.queue.isEmpty()) {
+                ByteBuffer buffer = spectator.queue.peek();
+                spectator.queuedBytes -= spectator.channel.write(buffer);
+                if (buffer.hasRemaining()) break;
+                spectator.queue.poll();
+            }
+            SelectionKey key = spectator.channel.keyFor(selector);
+            if (key != null && key.isValid())
+                key.interestOps(spectator.queue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close(spectator);
+        }
+    }
+
+    private void close(Spectator spectator) {
+        spectators.remove(spectator);
+        try {
+            spectator.channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Encodes the whole game state (while holding the lock).
+     */
+    private ByteBuffer snapshot() {
+        int words = slotTokens.length == 0 ? 0 : slotTokens[0].length;
+        int bytes = 1 + 4 * 10 + slotToCard.length * (5 + words * 10) + scores.length * 20
+                + (winners == null ? 1 : MAX_EVENT_BYTES + winners.length * 5);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        buffer.put(SNAPSHOT);
+        putVarLong(buffer, slotToCard.length);
+        putVarLong(buffer, scores.length);
+        putVarLong(buffer, zigzag(countdown));
+        putVarLong(buffer, zigzag(elapsed));
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            putVarLong(buffer, slotToCard[slot] + 1);
+            for (long word : slotTokens[slot])
+                putVarLong(buffer, word);
+        }
+        for (int player = 0; player < scores.length; player++) {
+            putVarLong(buffer, zigzag(scores[player]));
+            putVarLong(buffer, zigzag(freezes[player]));
+        }
+        buffer.put((byte) (winners == null ? 0 : 1));
+        if (winners != null) putWinners(buffer, winners);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void putWinners(ByteBuffer buffer, int[] players) {
+        buffer.put(WINNERS);
+        putVarLong(buffer, players.length);
+        for (int player : players)
+            putVarLong(buffer, player);
+    }
+}
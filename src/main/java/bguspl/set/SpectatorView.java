@@ -0,0 +1,233 @@
+package bguspl.set;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static bguspl.set.SpectatorBroadcaster.*;
+import static bguspl.set.VarInts.*;
+
+/**
+ * Decodes the stream of a SpectatorBroadcaster into the game state, and passes the events on to a user interface (if
+ * any). The stream can be fed in chunks of any size, as they arrive from the socket.
+ */
+public class SpectatorView {
+
+    private final UserInterface ui;
+
+    /**
+     * The bytes received but not decoded yet (in write mode).
+     */
+    private ByteBuffer received = ByteBuffer.allocate(4096);
+
+    /**
+     * The game state, valid after the first snapshot.
+     */
+    private boolean synced;
+    private int[] slotToCard = new int[0];
+    private long[][] slotTokens = new long[0][];
+    private int[] scores = new int[0];
+    private long[] freezes = new long[0];
+    private long countdown;
+    private boolean warn;
+    private long elapsed;
+    private int[] winners;
+
+    /**
+     * @param ui - the user interface to pass the events on to (null for none).
+     */
+    public SpectatorView(UserInterface ui) {
+        this.ui = ui;
+    }
+
+    /**
+     * Decodes all the complete events in a chunk of the stream (and keeps the rest for the next chunk).
+     *
+     * @param chunk - the bytes received (in read mode).
+     */
+    public void accept(ByteBuffer chunk) {
+        if (received.remaining() < chunk.remaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(received.capacity() * 2, received.position() + chunk.remaining()));
+            received.flip();
+            received = larger.put(received);
+        }
+        received.put(chunk);
+        received.flip();
+        while (received.hasRemaining()) {
+            int start = received.position();
+            try {
+                decode(received);
+            } catch (BufferUnderflowException e) {
+                // an incomplete event, wait for the rest of it
+                received.position(start);
+                break;
+            }
+        }
+        received.compact();
+    }
+
+    public boolean synced() {
+        return synced;
+    }
+
+    public int cardAt(int slot) {
+        return slotToCard[slot];
+    }
+
+    public boolean hasToken(int player, int slot) {
+        return (slotTokens[slot][player / Long.SIZE] & (1L << player)) != 0;
+    }
+
+    public int score(int player) {
+        return scores[player];
+    }
+
+    public long freeze(int player) {
+        return freezes[player];
+    }
+
+    public long countdown() {
+        return countdown;
+    }
+
+    public long elapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return - the winners, or null if the game is not over.
+     */
+    public int[] winners() {
+        return winners == null ? null : winners.clone();
+    }
+
+    /**
+     * Decodes a single event. The state is only changed once the whole event was read, so an incomplete event can be
+     * decoded again when the rest of it arrives.
+     */
+    private void decode(ByteBuffer buffer) {
+        byte opcode = buffer.get();
+        int player, slot;
+        switch (opcode) {
+            case SNAPSHOT:
+                decodeSnapshot(buffer);
+                break;
+            case PLACE_CARD:
+                slot = (int) getVarLong(buffer);
+                int card = (int) getVarLong(buffer);
+                slotToCard[slot] = card;
+                if (ui != null) ui.placeCard(card, slot);
+                break;
+            case REMOVE_CARD:
+                slot = (int) getVarLong(buffer);
+                slotToCard[slot] = -1;
+                if (ui != null) ui.removeCard(slot);
+                break;
+            case PLACE_TOKEN:
+                player = (int) getVarLong(buffer);
+                slot = (int) getVarLong(buffer);
+                slotTokens[slot][player / Long.SIZE] |= 1L << player;
+                if (ui != null) ui.placeToken(player, slot);
+                break;
+            case REMOVE_TOKEN:
+                player = (int) getVarLong(buffer);
+                slot = (int) getVarLong(buffer);
+                slotTokens[slot][player / Long.SIZE] &= ~(1L << player);
+                if (ui != null) ui.removeToken(player, slot);
+                break;
+            case REMOVE_ALL_TOKENS:
+                for (long[] tokens : slotTokens)
+                    Arrays.fill(tokens, 0L);
+                if (ui != null) ui.removeTokens();
+                break;
+            case REMOVE_SLOT_TOKENS:
+                slot = (int) getVarLong(buffer);
+                Arrays.fill(slotTokens[slot], 0L);
+                if (ui != null) ui.removeTokens(slot);
+                break;
+            case COUNTDOWN:
+                long value = getVarLong(buffer);
+                countdown += unzigzag(value >>> 1);
+                warn = (value & 1) != 0;
+                if (ui != null) ui.setCountdown(countdown, warn);
+                break;
+            case ELAPSED:
+                elapsed += unzigzag(getVarLong(buffer));
+                if (ui != null) ui.setElapsed(elapsed);
+                break;
+            case FREEZE:
+                player = (int) getVarLong(buffer);
+                long freeze = freezes[player] + unzigzag(getVarLong(buffer));
+                freezes[player] = freeze;
+                if (ui != null) ui.setFreeze(player, freeze);
+                break;
+            case SCORE:
+                player = (int) getVarLong(buffer);
+                int score = scores[player] + (int) unzigzag(getVarLong(buffer));
+                scores[player] = score;
+                if (ui != null) ui.setScore(player, score);
+                break;
+            case WINNERS:
+                int[] players = new int[(int) getVarLong(buffer)];
+                for (int i = 0; i < players.length; i++)
+                    players[i] = (int) getVarLong(buffer);
+                winners = players;
+                if (ui != null) ui.announceWinner(players);
+                break;
+            default:
+                throw new IllegalStateException("unknown spectator event " + opcode);
+        }
+    }
+
+    private void decodeSnapshot(ByteBuffer buffer) {
+        int tableSize = (int) getVarLong(buffer);
+        int players = (int) getVarLong(buffer);
+        long countdown = unzigzag(getVarLong(buffer));
+        long elapsed = unzigzag(getVarLong(buffer));
+        int[] slotToCard = new int[tableSize];
+        long[][] slotTokens = new long[tableSize][(players + Long.SIZE - 1) / Long.SIZE];
+        for (int slot = 0; slot < tableSize; slot++) {
+            slotToCard[slot] = (int) getVarLong(buffer) - 1;
+            for (int word = 0; word < slotTokens[slot].length; word++)
+                slotTokens[slot][word] = getVarLong(buffer);
+        }
+        int[] scores = new int[players];
+        long[] freezes = new long[players];
+        for (int player = 0; player < players; player++) {
+            scores[player] = (int) unzigzag(getVarLong(buffer));
+            freezes[player] = unzigzag(getVarLong(buffer));
+        }
+        boolean over = buffer.get() != 0;
+        int[] winners = null;
+        if (over) {
+            buffer.get(); // the WINNERS opcode
+            winners = new int[(int) getVarLong(buffer)];
+            for (int i = 0; i < winners.length; i++)
+                winners[i] = (int) getVarLong(buffer);
+        }
+
+        this.slotToCard = slotToCard;
+        this.slotTokens = slotTokens;
+        this.scores = scores;
+        this.freezes = freezes;
+        this.countdown = countdown;
+        this.elapsed = elapsed;
+        this.winners = winners;
+        this.synced = true;
+
+        if (ui != null) {
+            ui.removeTokens();
+            for (int slot = 0; slot < tableSize; slot++) {
+                if (slotToCard[slot] == -1) ui.removeCard(slot);
+                else ui.placeCard(slotToCard[slot], slot);
+                for (int player = 0; player < players; player++)
+                    if (hasToken(player, slot)) ui.placeToken(player, slot);
+            }
+            for (int player = 0; player < players; player++) {
+                ui.setScore(player, scores[player]);
+                ui.setFreeze(player, freezes[player]);
+            }
+            if (winners != null) ui.announceWinner(winners);
+        }
+    }
+}
@@ -1,11 +1,46 @@
 package bguspl.set;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Logger;
 
+/**
+ * A game thread that logs its start and stop. Once startAccounting is called, it also accounts for the usage of its
+ * run: its CPU time, how many times and for how long it was blocked entering a monitor, and how many times and for how
+ * long it waited (wait, join, sleep). The usage is sampled through ThreadMXBean, periodically while the thread runs and
+ * once more as it ends, and reported in the log.
+ */
 public class ThreadLogger extends Thread {
 
     final Logger logger;
 
+    /**
+     * The accounted threads, in start order: the running ones, and the ended ones until a report includes their final
+     * usage (null until accounting starts).
+     */
+    private static volatile Queue<ThreadLogger> accounted;
+    private static ThreadMXBean threads;
+
+    /**
+     * The total usage of the threads that ended and were dropped from accounted, by role (guarded by ThreadLogger.class).
+     */
+    private static final Map<String, Usage> ended = new TreeMap<>();
+
+    /**
+     * The usage of the thread: as of the last sample, and as of the last periodic report (for the deltas).
+     */
+    private volatile Usage usage;
+    private Usage reported;
+
     public ThreadLogger(Runnable target, String name, Logger logger) {
         super(target, name);
         this.logger = logger;
@@ -13,6 +48,8 @@ public class ThreadLogger extends Thread {
 
     public void startWithLog() {
         logStart(logger, getName());
+        Queue<ThreadLogger> accounted = ThreadLogger.accounted;
+        if (accounted != null) accounted.add(this);
         super.start();
     }
 
@@ -24,6 +61,16 @@ public class ThreadLogger extends Thread {
         }
     }
 
+    @Override
+    public void run() {
+        try {
+            super.run();
+        } finally {
+            // the last chance to sample: ThreadMXBean knows nothing about a thread once it ends
+            if (accounted != null) usage = sample();
+        }
+    }
+
     public static void logStart(Logger logger, String name) {
         logger.info("thread " + name + " starting.");
     }
@@ -31,4 +78,149 @@ public class ThreadLogger extends Thread {
     public static void logStop(Logger logger, String name) {
         logger.info("thread " + name + " terminated.");
     }
+
+    /**
+     * Starts accounting for the threads started with startWithLog from now on.
+     *
+     * @param periodMillis - the time between reports of the running threads (0 for none, only reportAccounting).
+     */
+    public static synchronized void startAccounting(Logger logger, long periodMillis) {
+        if (accounted != null) return;
+        threads = ManagementFactory.getThreadMXBean();
+        if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled())
+            threads.setThreadCpuTimeEnabled(true);
+        if (threads.isThreadContentionMonitoringSupported() && !threads.isThreadContentionMonitoringEnabled())
+            threads.setThreadContentionMonitoringEnabled(true);
+        accounted = new ConcurrentLinkedQueue<>();
+
+        if (periodMillis <= 0) return;
+        Thread reporter = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(periodMillis);
+                    report(logger, false);
+                }
+            } catch (InterruptedException ignored) {}
+        }, "thread-accounting");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    /**
+     * Logs the usage since start of every thread still accounted for, and the total per role (e.g. all the player-N
+     * threads, including the ones already dropped) with the share of the CPU time of each role.
+     */
+    public static void reportAccounting(Logger logger) {
+        report(logger, true);
+    }
+
+    private static synchronized void report(Logger logger, boolean breakdown) {
+        Queue<ThreadLogger> accounted = ThreadLogger.accounted;
+        if (accounted == null || accounted.isEmpty() && (!breakdown || ended.isEmpty())) return;
+
+        List<ThreadLogger> sampled = new ArrayList<>(accounted);
+        for (ThreadLogger thread : sampled)
+            if (thread.isAlive()) {
+                Usage usage = thread.sample();
+                if (usage != null && thread.isAlive()) thread.usage = usage;
+            }
+        for (ThreadLogger thread : sampled)
+            if (thread.usage == null && !thread.isAlive()) accounted.remove(thread); // it was never sampled
+        sampled.removeIf(thread -> thread.usage == null);
+
+        StringBuilder report = new StringBuilder(breakdown ? "thread usage since start:" : "thread usage (change since the last report):");
+        if (breakdown) sampled.sort(Comparator.comparingLong((ThreadLogger thread) -> thread.usage.cpuNanos).reversed());
+        Map<String, Usage> roles = new TreeMap<>();
+        Usage total = new Usage();
+        if (breakdown)
+            for (Map.Entry<String, Usage> role : ended.entrySet()) {
+                roles.computeIfAbsent(role.getKey(), ignored -> new Usage()).add(role.getValue());
+                total.add(role.getValue());
+            }
+        for (ThreadLogger thread : sampled) {
+            Usage usage = thread.usage;
+            if (breakdown) {
+                report.append("\n  ").append(usage.format(thread.getName()));
+                roles.computeIfAbsent(role(thread.getName()), ignored -> new Usage()).add(usage);
+                total.add(usage);
+            } else {
+                // only the threads that changed, with their change since the last report
+                Usage delta = usage.minus(thread.reported);
+                thread.reported = usage;
+                if (delta.cpuNanos > 0 || delta.blockedCount > 0 || delta.waitedCount > 0)
+                    report.append("\n  ").append(delta.format(thread.getName()));
+            }
+        }
+        if (breakdown) {
+            report.append("\nper role:");
+            for (Map.Entry<String, Usage> role : roles.entrySet())
+                report.append("\n  ").append(role.getValue().format(role.getKey()))
+                        .append(String.format(Locale.ROOT, ", %.1f%% of the cpu time",
+                                total.cpuNanos == 0 ? 0 : 100.0 * role.getValue().cpuNanos / total.cpuNanos));
+        }
+        logger.info(report.toString());
+
+        // a thread that ended is in the reports only through its role from now on, so the list does not keep growing
+        for (ThreadLogger thread : sampled)
+            if (!thread.isAlive() && (breakdown || thread.reported == thread.usage)) {
+                ended.computeIfAbsent(role(thread.getName()), ignored -> new Usage()).add(thread.usage);
+                accounted.remove(thread);
+            }
+    }
+
+    /**
+     * @return - the name of the thread without its number (e.g. "player" for "player-3").
+     */
+    private static String role(String name) {
+        int dash = name.lastIndexOf('-');
+        return dash > 0 && name.substring(dash + 1).chars().allMatch(Character::isDigit) ? name.substring(0, dash) : name;
+    }
+
+    /**
+     * @return - the usage of this thread so far (null if it already ended).
+     */
+    private Usage sample() {
+        ThreadInfo info = threads.getThreadInfo(getId());
+        if (info == null) return null;
+        Usage usage = new Usage();
+        usage.cpuNanos = Math.max(0, threads.getThreadCpuTime(getId()));
+        usage.userNanos = Math.max(0, threads.getThreadUserTime(getId()));
+        usage.blockedCount = info.getBlockedCount();
+        usage.blockedMillis = Math.max(0, info.getBlockedTime());
+        usage.waitedCount = info.getWaitedCount();
+        usage.waitedMillis = Math.max(0, info.getWaitedTime());
+        return usage;
+    }
+
+    private static class Usage {
+
+        long cpuNanos, userNanos, blockedCount, blockedMillis, waitedCount, waitedMillis;
+
+        void add(Usage other) {
+            cpuNanos += other.cpuNanos;
+            userNanos += other.userNanos;
+            blockedCount += other.blockedCount;
+            blockedMillis += other.blockedMillis;
+            waitedCount += other.waitedCount;
+            waitedMillis += other.waitedMillis;
+        }
+
+        Usage minus(Usage other) {
+            Usage delta = new Usage();
+            delta.add(this);
+            if (other == null) return delta;
+            delta.cpuNanos -= other.cpuNanos;
+            delta.userNanos -= other.userNanos;
+            delta.blockedCount -= other.blockedCount;
+            delta.blockedMillis -= other.blockedMillis;
+            delta.waitedCount -= other.waitedCount;
+            delta.waitedMillis -= other.waitedMillis;
+            return delta;
+        }
+
+        String format(String name) {
+            return String.format(Locale.ROOT, "%-12s cpu %7d ms (user %7d ms), blocked %6d times %7d ms, waited %7d times %8d ms",
+                    name, cpuNanos / 1_000_000, userNanos / 1_000_000, blockedCount, blockedMillis, waitedCount, waitedMillis);
+        }
+    }
 }
@@ -0,0 +1,231 @@
+package bguspl.set;
+
+import bguspl.set.ex.BotStrategy;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs many headless games between computer players in parallel, and reports how each bot strategy did.
+ * <p>
+ * Every game gets its own environment (logger, config, null user interface, util). The strategies rotate between the
+ * seats from game to game, and each game has its own seed for the deals and the bots' choices. The report aggregates
+ * per strategy: the share of wins (a draw is shared), points, penalties and sets per minute; and per game: the
+ * duration and the number of sets.
+ */
+public class Tournament {
+
+    /**
+     * The settings of a tournament game without a config file (the rest are the defaults of Config).
+     */
+    private static final String[][] DEFAULTS = {
+            {"TableDelaySeconds", "0"},
+            {"ComputerDelaySeconds", "0.01"},
+            {"PointFreezeSeconds", "0.1"},
+            {"PenaltyFreezeSeconds", "0.3"},
+            {"TurnTimeoutSeconds", "30"},
+    };
+
+    private final Properties properties;
+    private final int players;
+    private final BotStrategy[] strategies;
+    private final long timeoutMillis;
+
+    private static class GameResult {
+        long seed;
+        BotStrategy[] seats;
+        int[] scores;
+        int[] penalties;
+        long millis;
+        boolean timedOut;
+    }
+
+    private Tournament(Properties properties, int players, BotStrategy[] strategies, long timeoutMillis) {
+        this.properties = properties;
+        this.players = players;
+        this.strategies = strategies;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Runs a tournament.
+     *
+     * @param args - key=value settings: games (default: 100), players (per game, default: 4), strategies (default:
+     *             all of them, e.g. random,hinted), seed (default: 1), timeout (seconds per game, default: 300),
+     *             threads (default: the number of cores), report (file, default: tournament-report.txt) and
+     *             config (file, default: fast tournament settings).
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            String[] setting = arg.split("=", 2);
+            if (setting.length != 2) {
+                System.out.println("usage: Tournament [games=N] [players=N] [strategies=random,hinted,reckless] [seed=N]"
+                        + " [timeout=seconds] [threads=N] [report=file] [config=file]");
+                return;
+            }
+            settings.put(setting[0].trim(), setting[1].trim());
+        }
+        int games = Integer.parseInt(settings.getOrDefault("games", "100"));
+        int players = Integer.parseInt(settings.getOrDefault("players", "4"));
+        long seed = Long.parseLong(settings.getOrDefault("seed", "1"));
+        long timeoutMillis = (long) (Double.parseDouble(settings.getOrDefault("timeout", "300")) * 1000);
+        int threads = Integer.parseInt(settings.getOrDefault("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        String report = settings.getOrDefault("report", "tournament-report.txt");
+        BotStrategy[] strategies = settings.containsKey("strategies")
+                ? Arrays.stream(settings.get("strategies").split(",")).map(s -> BotStrategy.valueOf(s.trim().toUpperCase(Locale.ROOT))).toArray(BotStrategy[]::new)
+                : BotStrategy.values();
+
+        Logger logger = Logger.getLogger("Tournament");
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        if (settings.containsKey("config"))
+            properties.putAll(Config.loadProperties(settings.get("config"), logger));
+        else for (String[] setting : DEFAULTS)
+            properties.put(setting[0], setting[1]);
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(players));
+        properties.put("Hints", "False");
+        properties.put("EndGamePauseSeconds", "0");
+        properties.put("LogLevel", "OFF");
+
+        Tournament tournament = new Tournament(properties, players, strategies, timeoutMillis);
+        long start = System.currentTimeMillis();
+        List<GameResult> results = tournament.run(games, seed, threads);
+        String summary = tournament.report(results, System.currentTimeMillis() - start);
+        System.out.print(summary);
+        Files.write(Paths.get(report), summary.getBytes(StandardCharsets.UTF_8));
+        System.out.println("report written to " + report);
+    }
+
+    private List<GameResult> run(int games, long seed, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> new Thread(runnable, "tournament"));
+        try {
+            List<Future<GameResult>> futures = new ArrayList<>();
+            Random seeds = new Random(seed);
+            for (int game = 0; game < games; game++) {
+                BotStrategy[] seats = new BotStrategy[players];
+                for (int seat = 0; seat < players; seat++)
+                    seats[seat] = strategies[(game + seat) % strategies.length];
+                long gameSeed = seeds.nextLong();
+                futures.add(pool.submit(() -> play(seats, gameSeed)));
+            }
+            List<GameResult> results = new ArrayList<>();
+            for (Future<GameResult> future : futures)
+                results.add(future.get());
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Plays a single game on the calling thread.
+     */
+    private GameResult play(BotStrategy[] seats, long seed) throws InterruptedException {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config, ComplementTable.shared(config, logger)));
+
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, new Random(seed));
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Player(env, dealer, table, i, false);
+            players[i].setStrategy(seats[i], seed * 31 + i);
+        }
+
+        GameResult result = new GameResult();
+        result.seed = seed;
+        result.seats = seats;
+        long start = System.currentTimeMillis();
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        dealerThread.join(timeoutMillis);
+        if (dealerThread.isAlive()) {
+            result.timedOut = true;
+            dealer.terminate();
+            Thread.interrupted(); // terminate() interrupts the calling thread
+            dealerThread.join();
+        }
+        result.millis = System.currentTimeMillis() - start;
+        result.scores = new int[players.length];
+        result.penalties = new int[players.length];
+        for (int i = 0; i < players.length; i++) {
+            result.scores[i] = players[i].score();
+            result.penalties[i] = players[i].penalties();
+        }
+        env.state.release();
+        return result;
+    }
+
+    private String report(List<GameResult> results, long millis) {
+        int count = strategies.length;
+        double[] wins = new double[count];
+        long[] seats = new long[count], points = new long[count], penalties = new long[count];
+        long totalMillis = 0, totalSets = 0, timedOut = 0;
+        long[] durations = new long[results.size()];
+
+        StringBuilder games = new StringBuilder();
+        for (int g = 0; g < results.size(); g++) {
+            GameResult result = results.get(g);
+            int best = Arrays.stream(result.scores).max().orElse(0);
+            long winners = Arrays.stream(result.scores).filter(score -> score == best).count();
+            int sets = Arrays.stream(result.scores).sum();
+            for (int seat = 0; seat < result.seats.length; seat++) {
+                int strategy = Arrays.asList(strategies).indexOf(result.seats[seat]);
+                seats[strategy]++;
+                points[strategy] += result.scores[seat];
+                penalties[strategy] += result.penalties[seat];
+                if (result.scores[seat] == best) wins[strategy] += 1.0 / winners;
+            }
+            durations[g] = result.millis;
+            totalMillis += result.millis;
+            totalSets += sets;
+            if (result.timedOut) timedOut++;
+            games.append(String.format(Locale.ROOT, "%5d %20d %9.1f %5d %s%s%n", g + 1, result.seed, result.millis / 1000.0,
+                    sets, Arrays.toString(result.scores), result.timedOut ? " (timed out)" : ""));
+        }
+        Arrays.sort(durations);
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "tournament: %d games of %d players in %.1f seconds (%d timed out)%n",
+                results.size(), players, millis / 1000.0, timedOut));
+        if (!results.isEmpty())
+            report.append(String.format(Locale.ROOT, "game duration: mean %.1f s, median %.1f s, max %.1f s; %.1f sets per minute%n",
+                    totalMillis / 1000.0 / results.size(), durations[durations.length / 2] / 1000.0,
+                    durations[durations.length - 1] / 1000.0, totalMillis == 0 ? 0 : totalSets * 60_000.0 / totalMillis));
+        report.append(String.format(Locale.ROOT, "%n%-10s %7s %8s %9s %11s %14s%n", "strategy", "seats", "win rate",
+                "points", "penalties", "sets per min"));
+        for (int s = 0; s < count; s++) {
+            // the sets per minute of a seat of this strategy, over the games it played
+            long strategyMillis = 0;
+            for (GameResult result : results)
+                for (BotStrategy seat : result.seats)
+                    if (seat == strategies[s]) strategyMillis += result.millis;
+            report.append(String.format(Locale.ROOT, "%-10s %7d %7.1f%% %9d %11d %14.2f%n",
+                    strategies[s].name().toLowerCase(Locale.ROOT), seats[s], seats[s] == 0 ? 0 : 100.0 * wins[s] / seats[s],
+                    points[s], penalties[s], strategyMillis == 0 ? 0 : points[s] * 60_000.0 / strategyMillis));
+        }
+        report.append(String.format(Locale.ROOT, "%n%5s %20s %9s %5s %s%n", "game", "seed", "seconds", "sets", "scores"));
+        report.append(games);
+        return report.toString();
+    }
+}
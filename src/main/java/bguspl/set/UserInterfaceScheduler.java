@@ -0,0 +1,156 @@
+package bguspl.set;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Limits the rate of the countdown, elapsed time and freeze updates, which the dealer and the players push in loops.
+ * The game threads only store the latest values, and a single scheduler thread passes the ones that changed on screen
+ * to the wrapped user interface, config.uiRefreshHz times per second. All other updates are passed on right away.
+ */
+public class UserInterfaceScheduler implements UserInterface {
+
+    /**
+     * Marks a value that was not set yet.
+     */
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final UserInterface ui;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The latest values set by the game threads, and the last values passed to the user interface (accessed by the
+     * scheduler thread only). The countdown is stored as millies * 2 + (warn ? 1 : 0).
+     */
+    private volatile long countdown = NONE;
+    private volatile long elapsed = NONE;
+    private final AtomicLongArray freezes;
+    private long shownCountdown = NONE;
+    private long shownElapsed = NONE;
+    private final long[] shownFreezes;
+
+    public UserInterfaceScheduler(Config config, UserInterface ui) {
+        this.ui = ui;
+        this.freezes = new AtomicLongArray(config.players);
+        this.shownFreezes = new long[config.players];
+        for (int player = 0; player < config.players; player++) {
+            freezes.set(player, NONE);
+            shownFreezes[player] = NONE;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ui-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMicros = 1_000_000L / Math.max(1, config.uiRefreshHz);
+        scheduler.scheduleAtFixedRate(this::flush, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        ui.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        ui.removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        ui.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        ui.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        ui.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        ui.removeToken(player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        countdown = millies * 2 + (warn ? 1 : 0);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        elapsed = millies;
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        freezes.lazySet(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        ui.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        scheduler.shutdownNow();
+        ui.dispose();
+    }
+
+    /**
+     * Passes the values that changed on screen since the last flush to the user interface.
+     */
+    private void flush() {
+        long countdown = this.countdown;
+        if (countdown != NONE && countdownText(countdown) != countdownText(shownCountdown)) {
+            ui.setCountdown(countdown >> 1, (countdown & 1) != 0);
+            shownCountdown = countdown;
+        }
+
+        long elapsed = this.elapsed;
+        if (elapsed != NONE && (shownElapsed == NONE || elapsed / 1000 != shownElapsed / 1000)) {
+            ui.setElapsed(elapsed);
+            shownElapsed = elapsed;
+        }
+
+        for (int player = 0; player < shownFreezes.length; player++) {
+            long freeze = freezes.get(player);
+            if (freeze != NONE && freezeText(freeze) != freezeText(shownFreezes[player])) {
+                ui.setFreeze(player, freeze);
+                shownFreezes[player] = freeze;
+            }
+        }
+    }
+
+    /**
+     * @return - a number that changes iff the text of the countdown on screen changes.
+     */
+    private static long countdownText(long countdown) {
+        if (countdown == NONE) return NONE;
+        boolean warn = (countdown & 1) != 0;
+        long millies = countdown >> 1;
+        // with a warning the countdown shows hundredths of a second, otherwise seconds
+        return warn ? -(millies / 10) - 1 : millies / 1000;
+    }
+
+    /**
+     * @return - a number that changes iff the freeze text on screen changes.
+     */
+    private static long freezeText(long freeze) {
+        if (freeze == NONE) return NONE;
+        return freeze > 0 ? freeze / 1000 : -1;
+    }
+}
@@ -4,10 +4,15 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -21,6 +26,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final TimerPanel timerPanel;
     private final GamePanel gamePanel;
     private final PlayersPanel playersPanel;
+    private final JScrollPane playersScrollPane;
     private final WinnerPanel winnerPanel;
     private final Config config;
 
@@ -32,8 +38,10 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         this.config = config;
         timerPanel = new TimerPanel();
-        gamePanel = new GamePanel();
+        gamePanel = new GamePanel(logger);
         playersPanel = new PlayersPanel();
+        playersScrollPane = new JScrollPane(playersPanel, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        playersScrollPane.setBorder(null);
         winnerPanel = new WinnerPanel();
 
         setLayout(new GridBagLayout());
@@ -46,9 +54,9 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         add(timerPanel, gbc);
         gbc.gridy++;
-        add(gamePanel, gbc);
+        add(fitToScreen(gamePanel), gbc);
         gbc.gridy++;
-        add(playersPanel, gbc);
+        add(playersScrollPane, gbc);
         gbc.gridy++;
         add(winnerPanel, gbc);
         gbc.gridwidth = 1;
@@ -69,10 +77,35 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         EventQueue.invokeLater(() -> setVisible(true));
     }
 
+    /**
+     * Wraps a panel with a scroll pane if it does not fit in the screen (e.g. for big tables).
+     */
+    private Component fitToScreen(JComponent panel) {
+        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+        Dimension size = panel.getPreferredSize();
+        int maxWidth = screen.width * 9 / 10;
+        int maxHeight = screen.height * 2 / 3;
+        if (size.width <= maxWidth && size.height <= maxHeight)
+            return panel;
+
+        JScrollPane scrollPane = new JScrollPane(panel);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(config.cellHeight / 4);
+        scrollPane.getHorizontalScrollBar().setUnitIncrement(config.cellWidth / 4);
+        scrollPane.setPreferredSize(new Dimension(Math.min(size.width, maxWidth), Math.min(size.height, maxHeight)));
+        return scrollPane;
+    }
+
     private class TimerPanel extends JPanel {
 
         private final JLabel timerField;
 
+        /**
+         * The latest text and color set by the game threads, not yet applied to the label (guarded by this).
+         */
+        private String text;
+        private Color color;
+        private boolean flushScheduled;
+
         private String generateTime(long millies, boolean warn) {
             if (warn)
                 return format("Remaining Time: %.2f", (double) millies / 1000.0f);
@@ -91,162 +124,418 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void setCountdown(long millies, boolean warn) {
-            timerField.setText(generateTime(millies, warn));
-            timerField.setForeground(warn ? Color.RED : Color.BLACK);
+            update(generateTime(millies, warn), warn ? Color.RED : Color.BLACK);
         }
 
         private void setElapsed(long millies) {
-            timerField.setText("Elapsed time: " + millies / 1000);
+            update("Elapsed time: " + millies / 1000, Color.BLACK);
+        }
+
+        /**
+         * Keeps the latest text and color, and schedules a flush on the EDT unless one is already pending.
+         * Updates made until the flush runs replace each other, only the last one is shown.
+         */
+        private synchronized void update(String text, Color color) {
+            this.text = text;
+            this.color = color;
+            if (!flushScheduled) {
+                flushScheduled = true;
+                EventQueue.invokeLater(this::flush);
+            }
+        }
+
+        /**
+         * Applies the latest text and color to the label (runs on the EDT).
+         */
+        private void flush() {
+            String text;
+            Color color;
+            synchronized (this) {
+                flushScheduled = false;
+                text = this.text;
+                color = this.color;
+            }
+            timerField.setText(text);
+            timerField.setForeground(color);
         }
     }
 
     private class GamePanel extends JLayeredPane {
 
         private final Image emptyCard;
-        private final Image[] deck;
+        private final CardImages deck;
+        private final Font tokenFont;
+
+        /**
+         * The card images and the player tokens drawn in the grid cells (accessed by the EDT only).
+         * The tokens of each slot are a bit mask of the players (bit p of word p / 64 is player p).
+         */
         private final Image[][] grid;
-        private final boolean[][][] playerTokens;
-        private final JLabel[][] tokenText;
+        private final long[][] shownTokens;
+        private final int[] shownCards;
+        private final BitSet repaintSlots;
+        private Image renderedEmptyCard;
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        /**
+         * The table state written by the game threads and the slots changed since the last flush (guarded by this).
+         */
+        private final int[] slotToCard;
+        private final long[][] slotTokens;
+        private final BitSet dirtySlots;
+        private boolean flushScheduled;
 
-        private GamePanel() {
+        private GamePanel(Logger logger) {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
-
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+            // the card images are loaded (or drawn) in the background when first placed on the table
+            deck = new CardImages(config, logger);
+            emptyCard = CardImages.loadImageResource("cards/empty_card.png");
+            tokenFont = UIManager.getFont("Label.font");
 
+            // init the cards on the table grid as empty cards, with no tokens
             grid = new Image[config.rows][config.columns];
-            tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
-            for (int row = 0; row < config.rows; row++) {
-                for (int column = 0; column < config.columns; column++) {
-                    // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
-
-                    // init the JLabel selection overlay
-                    tokenText[row][column] = new JLabel("");
-                    tokenText[row][column].setVerticalAlignment(JLabel.TOP);
-                    tokenText[row][column].setHorizontalAlignment(JLabel.CENTER);
-                    tokenText[row][column].setOpaque(false);
-                    tokenText[row][column].setBorder(BorderFactory.createLineBorder(Color.black));
-                    tokenText[row][column].setBounds((column * config.cellWidth), (row * config.cellHeight), config.cellWidth, config.cellHeight);
-                    add(tokenText[row][column]);
-                }
-            }
+            for (Image[] row : grid)
+                Arrays.fill(row, emptyCard);
+            int words = (config.players + Long.SIZE - 1) / Long.SIZE;
+            shownTokens = new long[config.tableSize][words];
+            shownCards = new int[config.tableSize];
+            repaintSlots = new BitSet(config.tableSize);
+            slotTokens = new long[config.tableSize][words];
+            slotToCard = new int[config.tableSize];
+            Arrays.fill(slotToCard, -1);
+            dirtySlots = new BitSet(config.tableSize);
         }
 
-        private void placeCard(int slot, int card) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+        private synchronized void placeCard(int slot, int card) {
+            slotToCard[slot] = card;
+            CompletableFuture<Image> image = deck.load(card);
+            if (image.isDone()) markDirty(slot);
+            else image.thenRun(() -> cardLoaded(slot, card));
         }
 
-        private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+        private synchronized void cardLoaded(int slot, int card) {
+            if (slotToCard[slot] == card) markDirty(slot);
         }
 
-        private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        private synchronized void removeCard(int slot) {
+            slotToCard[slot] = -1;
+            markDirty(slot);
         }
 
-        private void removeTokens() {
+        private synchronized void placeToken(int player, int slot) {
+            slotTokens[slot][player / Long.SIZE] |= 1L << player;
+            markDirty(slot);
+        }
+
+        private synchronized void removeTokens() {
             for (int i = 0; i < config.tableSize; i++)
                 removeTokens(i);
         }
 
-        private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        private synchronized void removeTokens(int slot) {
+            Arrays.fill(slotTokens[slot], 0L);
+            markDirty(slot);
+        }
+
+        private synchronized void removeToken(int player, int slot) {
+            slotTokens[slot][player / Long.SIZE] &= ~(1L << player);
+            markDirty(slot);
+        }
+
+        /**
+         * Marks a slot to be redrawn, and schedules a flush on the EDT unless one is already pending.
+         * All the changes made until the flush runs are drawn together.
+         */
+        private void markDirty(int slot) {
+            dirtySlots.set(slot);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                EventQueue.invokeLater(this::flush);
+            }
+        }
+
+        /**
+         * Applies the pending changes to the grid and repaints only the changed cells (runs on the EDT).
+         */
+        private void flush() {
+            synchronized (this) {
+                flushScheduled = false;
+                for (int slot = dirtySlots.nextSetBit(0); slot >= 0; slot = dirtySlots.nextSetBit(slot + 1)) {
+                    shownCards[slot] = slotToCard[slot];
+                    System.arraycopy(slotTokens[slot], 0, shownTokens[slot], 0, slotTokens[slot].length);
+                }
+                repaintSlots.or(dirtySlots);
+                dirtySlots.clear();
+            }
+
+            for (int slot = repaintSlots.nextSetBit(0); slot >= 0; slot = repaintSlots.nextSetBit(slot + 1)) {
+                int row = slot / config.columns;
+                int column = slot % config.columns;
+                grid[row][column] = shownCards[slot] == -1 ? renderedEmptyCard() : renderedCard(slot, shownCards[slot]);
+                repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
+            }
+            repaintSlots.clear();
+        }
+
+        private Image renderedCard(int slot, int card) {
+            // draw an empty card until the image is (re)loaded, the slot is flushed again then
+            CompletableFuture<Image> image = deck.load(card);
+            if (!image.isDone()) {
+                image.thenRun(() -> cardLoaded(slot, card));
+                return renderedEmptyCard();
             }
+            return image.isCompletedExceptionally() ? renderedEmptyCard() : image.getNow(null);
         }
 
-        private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        private Image renderedEmptyCard() {
+            if (renderedEmptyCard == null)
+                renderedEmptyCard = render(emptyCard);
+            return renderedEmptyCard;
         }
 
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
+        /**
+         * Draws an image once into an image of the cell size in the screen's format, so painting it is a plain copy.
+         * The card images are already drawn this way by CardImages.
+         */
+        private Image render(Image image) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            BufferedImage rendered = gc != null
+                    ? gc.createCompatibleImage(config.cellWidth, config.cellHeight, Transparency.TRANSLUCENT)
+                    : new BufferedImage(config.cellWidth, config.cellHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = rendered.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            return rendered;
+        }
+
+        /**
+         * Draws the names of the players with a token on a slot, separated by commas and centered at the top of the
+         * cell (wrapped to more lines if needed). The names are drawn one by one, so no strings are built.
+         */
+        private void paintTokens(Graphics g, int slot, int x, int y) {
+            long[] tokens = shownTokens[slot];
+            FontMetrics metrics = g.getFontMetrics();
+            int separator = metrics.stringWidth(", ");
+            int lineY = y + metrics.getAscent();
+
+            int first = nextToken(tokens, 0);
+            while (first >= 0) {
+                // find the players that fit in this line
+                int width = metrics.stringWidth(config.playerNames[first]);
+                int last = first;
+                for (int next = nextToken(tokens, first + 1); next >= 0; next = nextToken(tokens, next + 1)) {
+                    int nextWidth = width + separator + metrics.stringWidth(config.playerNames[next]);
+                    if (nextWidth > config.cellWidth) break;
+                    width = nextWidth;
+                    last = next;
+                }
+
+                int lineX = x + (config.cellWidth - width) / 2;
+                for (int player = first; player >= 0 && player <= last; player = nextToken(tokens, player + 1)) {
+                    g.drawString(config.playerNames[player], lineX, lineY);
+                    lineX += metrics.stringWidth(config.playerNames[player]);
+                    if (player != last || nextToken(tokens, last + 1) >= 0) {
+                        g.drawString(",", lineX, lineY);
+                        lineX += separator;
+                    }
+                }
+                lineY += metrics.getHeight();
+                first = nextToken(tokens, last + 1);
             }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+        }
+
+        /**
+         * @return - the first player from the given one with a token in the mask, or -1 if there is none.
+         */
+        private int nextToken(long[] tokens, int from) {
+            for (int word = from / Long.SIZE; word < tokens.length; word++) {
+                long bits = word == from / Long.SIZE ? tokens[word] & (-1L << from) : tokens[word];
+                if (bits != 0) return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+            }
+            return -1;
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            // draw only the cells that intersect the area being repainted
+            Rectangle clip = g.getClipBounds();
+            int firstRow = 0, lastRow = config.rows - 1, firstColumn = 0, lastColumn = config.columns - 1;
+            if (clip != null) {
+                firstRow = Math.max(firstRow, clip.y / config.cellHeight);
+                lastRow = Math.min(lastRow, (clip.y + clip.height - 1) / config.cellHeight);
+                firstColumn = Math.max(firstColumn, clip.x / config.cellWidth);
+                lastColumn = Math.min(lastColumn, (clip.x + clip.width - 1) / config.cellWidth);
+            }
+            g.setFont(tokenFont);
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int x = column * config.cellWidth;
+                    int y = row * config.cellHeight;
+                    g.drawImage(grid[row][column], x, y, this);
+                    g.setColor(Color.BLACK);
+                    g.drawRect(x, y, config.cellWidth - 1, config.cellHeight - 1);
+                    paintTokens(g, row * config.columns + column, x, y);
+                }
         }
     }
 
-    private class PlayersPanel extends JPanel {
-
-        private final JLabel[][] playersTable;
+    /**
+     * The players' names and scores, painted directly (no component per player) and only for the visible rows, so it
+     * scales to hundreds of players. Clicking it switches between all the players and a leaderboard of the top ones.
+     */
+    private class PlayersPanel extends JComponent implements Scrollable {
+
+        private final Font nameFont = new Font("Serif", Font.BOLD, config.fontSize);
+        private final Font scoreFont = new Font("Serif", Font.PLAIN, config.fontSize);
+
+        /**
+         * The number of players per row, and the size of each player's cell (name above score).
+         */
+        private final int columns;
+        private final int cellWidth;
+        private final int cellHeight;
+
+        /**
+         * The scores and the freeze times of the players, written by the game threads.
+         */
+        private final AtomicIntegerArray scores;
+        private final AtomicLongArray freezes;
+
+        /**
+         * True iff showing the leaderboard, and the players in it by rank (accessed by the EDT only).
+         */
+        private boolean leaderboard;
+        private final int[] ranking;
 
         private PlayersPanel() {
-            this.setLayout(new GridLayout(2, config.players));
-            this.setPreferredSize(new Dimension(config.players * config.playerCellWidth, config.rows * config.playerCellHeight));
-            this.playersTable = new JLabel[2][config.players];
-            for (int i = 0; i < config.players; i++) {
-                this.playersTable[0][i] = new JLabel(config.playerNames[i]);
-                this.playersTable[0][i].setFont(new Font("Serif", Font.BOLD, config.fontSize));
-                this.playersTable[0][i].setHorizontalAlignment(JLabel.CENTER);
-                this.add(playersTable[0][i]);
-            }
+            int screenWidth = Toolkit.getDefaultToolkit().getScreenSize().width * 9 / 10;
+            columns = Math.min(config.players, Math.max(1, screenWidth / config.playerCellWidth));
+            cellWidth = config.playerCellWidth;
+            cellHeight = 2 * config.playerCellHeight;
+            scores = new AtomicIntegerArray(config.players);
+            freezes = new AtomicLongArray(config.players);
+            ranking = new int[Math.min(config.players, config.leaderboardSize)];
+
+            setPreferredSize(new Dimension(columns * cellWidth, rows(config.players) * cellHeight));
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    leaderboard = !leaderboard && ranking.length > 0;
+                    int players = leaderboard ? ranking.length : config.players;
+                    setPreferredSize(new Dimension(columns * cellWidth, rows(players) * cellHeight));
+                    revalidate();
+                    repaint();
+                }
+            });
+        }
 
-            for (int i = 0; i < config.players; i++) {
-                this.playersTable[1][i] = new JLabel("0");
-                this.playersTable[1][i].setFont(new Font("Serif", Font.PLAIN, config.fontSize));
-                this.playersTable[1][i].setHorizontalAlignment(JLabel.CENTER);
-                this.add(playersTable[1][i]);
-            }
+        private int rows(int players) {
+            return (players + columns - 1) / columns;
         }
 
         private void setFreeze(int player, long millies) {
-            if (millies > 0) {
-                this.playersTable[0][player].setText(config.playerNames[player] + " (" + millies / 1000 + ")");
-                this.playersTable[0][player].setForeground(Color.RED);
-            } else {
-                this.playersTable[0][player].setText(config.playerNames[player]);
-                this.playersTable[0][player].setForeground(Color.BLACK);
-            }
+            freezes.set(player, millies);
+            repaintPlayer(player);
         }
 
         private void setScore(int player, int score) {
-            playersTable[1][player].setText(Integer.toString(score));
+            scores.set(player, score);
+            repaintPlayer(player);
+        }
+
+        private void repaintPlayer(int player) {
+            // in the leaderboard the player may change rank, it is small enough to repaint all of it
+            if (leaderboard) repaint();
+            else repaint(player % columns * cellWidth, player / columns * cellHeight, cellWidth, cellHeight);
+        }
+
+        /**
+         * Finds the players with the highest scores (ties broken by id).
+         */
+        private void rank() {
+            for (int rank = 0; rank < ranking.length; rank++) {
+                int best = -1;
+                for (int player = 0; player < config.players; player++) {
+                    if (isRanked(player, rank)) continue;
+                    if (best == -1 || scores.get(player) > scores.get(best)) best = player;
+                }
+                ranking[rank] = best;
+            }
+        }
+
+        private boolean isRanked(int player, int ranked) {
+            for (int rank = 0; rank < ranked; rank++)
+                if (ranking[rank] == player) return true;
+            return false;
+        }
+
+        @Override
+        public void paintComponent(Graphics g) {
+            int players = config.players;
+            if (leaderboard) {
+                rank();
+                players = ranking.length;
+            }
+
+            // paint only the rows that intersect the area being repainted
+            Rectangle clip = g.getClipBounds();
+            int firstRow = clip == null ? 0 : clip.y / cellHeight;
+            int lastRow = clip == null ? rows(players) - 1 : Math.min(rows(players) - 1, (clip.y + clip.height - 1) / cellHeight);
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = 0; column < columns; column++) {
+                    int index = row * columns + column;
+                    if (index >= players) break;
+                    if (leaderboard) paintPlayer(g, ranking[index], index + 1, column * cellWidth, row * cellHeight);
+                    else paintPlayer(g, index, 0, column * cellWidth, row * cellHeight);
+                }
+        }
+
+        /**
+         * @param rank - the rank of the player in the leaderboard (0 if not showing the leaderboard).
+         */
+        private void paintPlayer(Graphics g, int player, int rank, int x, int y) {
+            long freeze = freezes.get(player);
+            String name = config.playerNames[player];
+            if (rank > 0) name = rank + ". " + name;
+            if (freeze > 0) name = name + " (" + freeze / 1000 + ")";
+            g.setColor(freeze > 0 ? Color.RED : Color.BLACK);
+            drawCentered(g, nameFont, name, x, y);
+            g.setColor(Color.BLACK);
+            drawCentered(g, scoreFont, Integer.toString(scores.get(player)), x, y + cellHeight / 2);
+        }
+
+        private void drawCentered(Graphics g, Font font, String text, int x, int y) {
+            g.setFont(font);
+            FontMetrics metrics = g.getFontMetrics();
+            int height = cellHeight / 2;
+            g.drawString(text, x + (cellWidth - metrics.stringWidth(text)) / 2, y + (height - metrics.getHeight()) / 2 + metrics.getAscent());
+        }
+
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            Dimension size = getPreferredSize();
+            return new Dimension(size.width, Math.min(size.height, config.scoreboardRows * cellHeight));
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? cellHeight : cellWidth;
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return false;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            return false;
         }
     }
 
@@ -326,13 +615,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        EventQueue.invokeLater(() -> {
+            playersScrollPane.setVisible(false);
+            winnerPanel.announceWinner(players);
+            winnerPanel.setVisible(true);
+        });
     }
 
     @Override
     public void dispose() {
+        gamePanel.deck.shutdown();
         super.dispose();
     }
 }
@@ -0,0 +1,262 @@
+package bguspl.set;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Terminal implementation of the UserInterface interface, using ANSI escape codes (for running without a display).
+ * The game threads only update the state. A single thread draws a frame config.uiRefreshHz times per second and
+ * writes only the lines that changed since the previous frame, in a single write.
+ */
+public class UserInterfaceTerminal implements UserInterface {
+
+    private static final String ESC = "\u001b[";
+    private static final String RESET = ESC + "0m";
+    private static final String RED = ESC + "31m";
+    private static final String BOLD = ESC + "1m";
+
+    private final Config config;
+    private final PrintStream out;
+    private final ScheduledExecutorService renderer;
+
+    /**
+     * The width of a grid cell in characters (not including the border).
+     */
+    private final int cellWidth;
+
+    /**
+     * The state of the game (guarded by this). The tokens of each slot are a bit mask of the players.
+     */
+    private final int[] slotToCard;
+    private final long[][] slotTokens;
+    private final int[] scores;
+    private final long[] freezes;
+    private long countdown;
+    private boolean warn;
+    private boolean elapsedMode;
+    private String winners;
+    private boolean changed = true;
+
+    /**
+     * The lines of the previous frame (guarded by this).
+     */
+    private List<String> previousFrame = new ArrayList<>();
+
+    public UserInterfaceTerminal(Config config, PrintStream out) {
+        this.config = config;
+        this.out = out;
+        this.cellWidth = Math.max(config.featureCount, 12);
+        this.slotToCard = new int[config.tableSize];
+        Arrays.fill(slotToCard, -1);
+        this.slotTokens = new long[config.tableSize][(config.players + Long.SIZE - 1) / Long.SIZE];
+        this.scores = new int[config.players];
+        this.freezes = new long[config.players];
+
+        // clear the screen and hide the cursor
+        out.print(ESC + "2J" + ESC + "?25l");
+        out.flush();
+
+        renderer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "terminal-ui");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMicros = 1_000_000L / Math.max(1, config.uiRefreshHz);
+        renderer.scheduleAtFixedRate(this::render, 0, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        slotToCard[slot] = card;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        slotToCard[slot] = -1;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        slotTokens[slot][player / Long.SIZE] |= 1L << player;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        for (long[] tokens : slotTokens)
+            Arrays.fill(tokens, 0L);
+        changed = true;
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        Arrays.fill(slotTokens[slot], 0L);
+        changed = true;
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        slotTokens[slot][player / Long.SIZE] &= ~(1L << player);
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        this.countdown = millies;
+        this.warn = warn;
+        this.elapsedMode = false;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) {
+        this.countdown = millies;
+        this.elapsedMode = true;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setFreeze(int player, long millies) {
+        freezes[player] = millies;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        scores[player] = score;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        List<String> names = new ArrayList<>();
+        for (int player : players)
+            names.add(config.playerNames[player]);
+        if (players.length == 1) winners = "THE WINNER IS: " + names.get(0) + "!!!";
+        else winners = "IT IS A DRAW: " + String.join(" AND ", names) + " WON!!!";
+        changed = true;
+    }
+
+    @Override
+    public void dispose() {
+        renderer.shutdownNow();
+        try {
+            renderer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {}
+        render();
+        int lines;
+        synchronized (this) {
+            lines = previousFrame.size();
+        }
+        // move below the last frame and show the cursor again
+        out.print(ESC + (lines + 1) + ";1H" + ESC + "?25h");
+        out.flush();
+    }
+
+    /**
+     * Draws a frame and writes the lines that changed since the previous one.
+     * The write is done after releasing the lock, so a slow terminal does not block the game threads.
+     */
+    private void render() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (this) {
+            if (!changed) return;
+            changed = false;
+            List<String> frame = frame();
+            for (int line = 0; line < Math.max(frame.size(), previousFrame.size()); line++) {
+                String text = line < frame.size() ? frame.get(line) : "";
+                if (line < previousFrame.size() && text.equals(previousFrame.get(line))) continue;
+                sb.append(ESC).append(line + 1).append(";1H").append(text).append(ESC).append('K');
+            }
+            previousFrame = frame;
+        }
+        if (sb.length() > 0) {
+            out.print(sb);
+            out.flush();
+        }
+    }
+
+    private List<String> frame() {
+        List<String> frame = new ArrayList<>();
+
+        // timer
+        if (winners != null) frame.add(BOLD + winners + RESET);
+        else if (elapsedMode) frame.add("Elapsed time: " + countdown / 1000);
+        else if (warn) frame.add(RED + String.format("Remaining Time: %.2f", countdown / 1000.0) + RESET);
+        else frame.add("Remaining Time: " + countdown / 1000);
+        frame.add("");
+
+        // the table grid, each cell shows the card features and the tokens on it
+        String border = horizontalBorder();
+        for (int row = 0; row < config.rows; row++) {
+            frame.add(border);
+            StringBuilder cards = new StringBuilder("|");
+            StringBuilder tokens = new StringBuilder("|");
+            for (int column = 0; column < config.columns; column++) {
+                int slot = row * config.columns + column;
+                int card = slotToCard[slot];
+                String features = card == -1 ? "" : UserInterfaceSwing.intInBaseToPaddedString(card, config.featureCount, config.featureSize);
+                cards.append(' ').append(pad(features, cellWidth - 1)).append('|');
+                tokens.append(' ').append(pad(tokensText(slot), cellWidth - 1)).append('|');
+            }
+            frame.add(cards.toString());
+            frame.add(tokens.toString());
+        }
+        frame.add(border);
+        frame.add("");
+
+        // the score board, as many players per line as fit in the width of the grid
+        int width = border.length();
+        StringBuilder line = new StringBuilder();
+        int lineLength = 0;
+        for (int player = 0; player < config.players; player++) {
+            String text = config.playerNames[player] + ": " + scores[player];
+            if (freezes[player] > 0) text += " (" + freezes[player] / 1000 + ")";
+            if (lineLength > 0 && lineLength + text.length() + 3 > width) {
+                frame.add(line.toString());
+                line.setLength(0);
+                lineLength = 0;
+            }
+            if (lineLength > 0) {
+                line.append("   ");
+                lineLength += 3;
+            }
+            line.append(freezes[player] > 0 ? RED + text + RESET : text);
+            lineLength += text.length();
+        }
+        frame.add(line.toString());
+        return frame;
+    }
+
+    private String horizontalBorder() {
+        char[] border = new char[config.columns * (cellWidth + 1) + 1];
+        Arrays.fill(border, '-');
+        for (int column = 0; column <= config.columns; column++)
+            border[column * (cellWidth + 1)] = '+';
+        return new String(border);
+    }
+
+    private String tokensText(int slot) {
+        StringBuilder text = new StringBuilder();
+        for (int player = 0; player < config.players; player++)
+            if ((slotTokens[slot][player / Long.SIZE] & (1L << player)) != 0) {
+                if (text.length() > 0) text.append(',');
+                text.append(player + 1);
+            }
+        return text.toString();
+    }
+
+    private static String pad(String text, int width) {
+        if (text.length() >= width) return text.substring(0, width);
+        StringBuilder sb = new StringBuilder(text);
+        while (sb.length() < width) sb.append(' ');
+        return sb.toString();
+    }
+}
@@ -13,8 +13,18 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The precomputed complement of each pair of cards (null to compute the complements).
+     */
+    private final ComplementTable complements;
+
     public UtilImpl(Config config) {
+        this(config, null);
+    }
+
+    public UtilImpl(Config config, ComplementTable complements) {
         this.config = config;
+        this.complements = complements;
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -40,21 +50,21 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= config.featureSize) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            int first = feature(cards[0], weight);
+            for (int j = 1; j < cards.length; ++j)
+                if (first != feature(cards[j], weight)) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length && butDifferent; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (feature(cards[j - 1], weight) == feature(cards[k], weight)) {
                         butDifferent = false;
                         break;
                     }
@@ -66,6 +76,78 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        // with fewer than 3 values per feature the last card of a set is not determined by the others
+        if (config.featureSize < 3 || config.featureSize > Long.SIZE)
+            return findSetsByCombinations(deck, count);
+
+        LinkedList<int[]> sets = new LinkedList<>();
+        int n = deck.size();
+        int r = config.featureSize;
+        int k = r - 1;
+        if (n < r) return sets;
+
+        // the index of each card in the deck (-1 if not in it)
+        int[] index = new int[config.deckSize];
+        Arrays.fill(index, -1);
+        for (int i = 0; i < n; ++i)
+            index[deck.get(i)] = i;
+
+        // choose all but the last card of a set, the last one is then determined by the others
+        int[] combination = new int[k];
+        int[] cards = new int[k];
+        for (int i = 0; i < k; ++i)
+            combination[i] = i;
+
+        while (combination[k - 1] < n) {
+            for (int i = 0; i < k; ++i)
+                cards[i] = deck.get(combination[i]);
+            int last = complements != null ? complements.complement(cards[0], cards[1]) : completeSet(cards);
+
+            // count each set once - when its completing card is the last one of the set in deck order
+            if (last != -1 && index[last] > combination[k - 1]) {
+                int[] set = Arrays.copyOf(cards, r);
+                set[k] = last;
+                Arrays.sort(set);
+                sets.add(set);
+                if (sets.size() >= count) return sets;
+            }
+
+            // generate next combination in lexicographic order
+            int t = k - 1;
+            while (t != 0 && combination[t] == n - k + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < k; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return sets;
+    }
+
+    /**
+     * Finds the card that completes the given featureSize - 1 cards to a legal set.
+     *
+     * @param cards - featureSize - 1 distinct card ids.
+     * @return - the completing card id, or -1 if there is none.
+     */
+    private int completeSet(int[] cards) {
+        int card = 0;
+        long all = config.featureSize == Long.SIZE ? -1L : (1L << config.featureSize) - 1;
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= config.featureSize) {
+            long values = 0;
+            for (int c : cards)
+                values |= 1L << feature(c, weight);
+
+            int value;
+            if (Long.bitCount(values) == 1) // sameSame
+                value = Long.numberOfTrailingZeros(values);
+            else if (Long.bitCount(values) == cards.length) // butDifferent, take the missing value
+                value = Long.numberOfTrailingZeros(~values & all);
+            else
+                return -1;
+            card += value * weight;
+        }
+        return card;
+    }
+
+    private List<int[]> findSetsByCombinations(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
@@ -90,6 +172,10 @@ public class UtilImpl implements Util {
         return sets;
     }
 
+    private int feature(int card, int weight) {
+        return card / weight % config.featureSize;
+    }
+
     public void spin() {
         if (config.randomSpinMax <= 0) return;
         long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
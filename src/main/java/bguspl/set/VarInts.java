@@ -0,0 +1,37 @@
+package bguspl.set;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length encoding of numbers, for the binary streams (7 bits per byte, least significant first).
+ * Signed numbers that may be negative are zigzag encoded first, so small magnitudes take few bytes.
+ */
+final class VarInts {
+
+    private VarInts() {}
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
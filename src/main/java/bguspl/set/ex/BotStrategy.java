@@ -0,0 +1,59 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The ways a computer player chooses the slots of its next claim.
+ */
+public enum BotStrategy {
+
+    /**
+     * Picks random slots, and claims them only if they form a legal set.
+     */
+    RANDOM {
+        @Override
+        int[] claim(Env env, Table table, Random random) {
+            int[] slots = randomSlots(env, random);
+            return table.isLegitRequest(slots) && env.util.testSet(table.fromSlotsToCards(slots)) ? slots : null;
+        }
+    },
+
+    /**
+     * Picks random slots and claims them whether they form a set or not.
+     */
+    RECKLESS {
+        @Override
+        int[] claim(Env env, Table table, Random random) {
+            int[] slots = randomSlots(env, random);
+            return table.isLegitRequest(slots) ? slots : null;
+        }
+    },
+
+    /**
+     * Claims one of the sets on the table (as the hints show them).
+     */
+    HINTED {
+        @Override
+        int[] claim(Env env, Table table, Random random) {
+            int[] layout = new int[env.config.tableSize];
+            table.snapshot(layout);
+            List<int[]> sets = SetCache.of(env).setsOf(layout, env.util);
+            return sets.isEmpty() ? null : sets.get(random.nextInt(sets.size())).clone();
+        }
+    };
+
+    /**
+     * @return - the slots to claim, or null to claim nothing this time.
+     */
+    abstract int[] claim(Env env, Table table, Random random);
+
+    private static int[] randomSlots(Env env, Random random) {
+        int[] slots = new int[3];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = random.nextInt(env.config.tableSize);
+        return slots;
+    }
+}
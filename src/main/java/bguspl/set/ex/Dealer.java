@@ -1,18 +1,25 @@
 package bguspl.set.ex;
 
+import bguspl.set.ClaimEvents;
 import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.ThreadLogger;
 
 import java.util.List;
+import java.util.Random;
 import java.util.Vector;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * This class manages the dealer's threads and data
  */
 public class Dealer implements Runnable {
 
+    /**
+     * The interval between updates of the countdown display while no claim arrives (in milliseconds).
+     */
+    private static final long TIMER_DISPLAY_MILLIS = 10;
+
     /**
      * The game environment object.
      */
@@ -25,8 +32,14 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     //NEW:
-    private Thread[] playersThreads;
-    private PriorityQueue<int[][]> requests;
+    private ThreadLogger[] playersThreads;
+    private ClaimRing requests;
+
+    /**
+     * The claim being verified and its cards (reused, so verifying a claim allocates nothing).
+     */
+    private final Claim claim = new Claim();
+    private int[] claimCards = new int[0];
 
     /**
      * The list of card ids that are left in the dealer's deck.
@@ -43,14 +56,47 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
+    /**
+     * True iff the cards on the table form no legal set, and no card left in the deck can fix it.
+     */
+    private volatile boolean deadTable;
+
+    /**
+     * The source of the random choices of cards.
+     */
+    private final Random random;
+
+    /**
+     * The sets of the deck shape, for checking cards for a set.
+     */
+    private final SetCache setCache;
+
+    /**
+     * The cards on the table, copied for the end of game check (reused, so the check allocates nothing).
+     */
+    private final int[] tableCards;
+
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, new Random());
+    }
+
+    /**
+     * @param random - the source of the random choices of cards (e.g. seeded, to repeat the same deals).
+     */
+    public Dealer(Env env, Table table, Player[] players, Random random) {
         this.env = env;
+        this.random = random;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        deck = env.state.deck();
+        deck.clear();
+        for(int card = 0 ; card < env.config.deckSize ; card++)
+            deck.add(card);
 
         //New:
-        requests = new PriorityQueue<>(this);
+        requests = new ClaimRing(this);
+        setCache = SetCache.of(env);
+        tableCards = new int[env.config.tableSize];
     }
 
     /**
@@ -61,10 +107,10 @@ public class Dealer implements Runnable {
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
         
         //Creating the player's threads:
-        playersThreads = new Thread[players.length];
+        playersThreads = new ThreadLogger[players.length];
         for(int i = 0 ; i < playersThreads.length ; i++){
-            playersThreads[i] = new Thread(players[i], "player" + players[i].id + ""); /////???
-            playersThreads[i].start();
+            playersThreads[i] = new ThreadLogger(players[i], "player-" + players[i].id, env.logger);
+            playersThreads[i].startWithLog();
         }
 
         // Loop:
@@ -75,6 +121,14 @@ public class Dealer implements Runnable {
             removeAllCardsFromTable();
         }
         announceWinners();
+
+        // the game state may be released once the dealer ends, so no other game thread may still be using it then
+        Thread.interrupted(); // terminate() interrupts the calling thread
+        try {
+            for(int i = playersThreads.length-1 ; i >= 0 ; i--)
+                playersThreads[i].joinWithLog();
+            table.hintService().join();
+        } catch (InterruptedException ignored) {}
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
@@ -83,11 +137,13 @@ public class Dealer implements Runnable {
      */
     private void timerLoop() {
         reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-        while (!terminate && System.currentTimeMillis() < reshuffleTime & !shouldFinish()){
+        while (!terminate && System.currentTimeMillis() < reshuffleTime & !deadTable & !shouldFinish()){
             sleepUntilWokenOrTimeout();
+            long start = System.nanoTime();
             updateTimerDisplay(false);
             removeCardsFromTable();
             placeCardsOnTable();
+            env.metrics.dealerLoopTime.record(System.nanoTime() - start);
         }
     }
 
@@ -96,6 +152,7 @@ public class Dealer implements Runnable {
      */
     public void terminate() {
         terminate = true;
+        table.hintService().terminate();
         for(int i = playersThreads.length-1 ; i >= 0 ; i--){
             players[i].terminate();
         }
@@ -108,28 +165,50 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        if (terminate) return true;
+        // the cards on the table are still in play, so a set may be made of cards from both
+        table.snapshot(tableCards);
+        return !setCache.hasSet(deck, tableCards, env.util);
     }
 
     /**
-     * Checks cards should be removed from the table and removes them.
+     * Checks cards should be removed from the table and removes them, for every claim waiting.
      */
-    private synchronized void removeCardsFromTable() {
-        if(requests.size() != 0){
-            int[][] req = requests.take();
-            int player = req[0][0];
-            int[] slots = req[1];
-            if(isLegitRequest(player)){
+    synchronized void removeCardsFromTable() {
+        while(requests.size() != 0){
+            requests.take(claim);
+            long validation = System.nanoTime();
+            int player = claim.player;
+            int[] slots = claim.slots;
+            if(table.isStale(slots, claim.version)){
+                // the cards changed since the claim was made - neither a point nor a penalty
+                env.journal.verdict(player, GameJournal.STALE);
+                players[player].rejectClaim();
+                env.metrics.staleClaims.increment();
+                env.metrics.verdictLatency.record(System.nanoTime() - claim.nanos);
+                env.events.claimValidated(player, slots, claim.nanos, validation, ClaimEvents.STALE);
+            }
+            else if(isLegitRequest(player)){
                 synchronized(players[player]){ 
-                    int[] cards = table.fromSlotsToCards(slots);
-                    if(env.util.testSet(cards)){
+                    if(claimCards.length != slots.length) claimCards = new int[slots.length];
+                    table.fromSlotsToCards(slots, claimCards);
+                    boolean point = env.util.testSet(claimCards);
+                    if(point){
+                        env.journal.verdict(player, GameJournal.POINT);
                         players[player].point();
+                        env.journal.score(player, players[player].score());
+                        env.metrics.validSets.increment();
                         actuallyRemovingTheCards(slots);
                         updateTimerDisplay(true);
                     }else{ // illegal set
+                        env.journal.verdict(player, GameJournal.PENALTY);
                         players[player].penalty();
+                        env.metrics.penalties.increment();
                     }
                     players[player].notifyAll();
+                    env.metrics.verdictLatency.record(System.nanoTime() - claim.nanos);
+                    env.events.claimValidated(player, slots, claim.nanos, validation,
+                            point ? ClaimEvents.POINT : ClaimEvents.PENALTY);
                 }
             }
         }
@@ -137,27 +216,75 @@ public class Dealer implements Runnable {
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
+     * The cards are chosen so the table has a legal set whenever the deck allows it, otherwise the table is reshuffled
+     * right away instead of waiting for the turn timeout.
      */
     private synchronized void placeCardsOnTable() {
         Vector<Integer> emptySlots = table.getEmptySlots();
-        if(emptySlots.size() == 12) freezeAll(true);
-        while(!emptySlots.isEmpty() & !deck.isEmpty()){
-            int random = (int)(Math.random()*deck.size());
-            int card = deck.remove(random);
-            int slot = emptySlots.remove(0);
-            table.placeCard(card, slot);
+        if(emptySlots.size() == env.config.tableSize) freezeAll(true);
+
+        // choose the cards to deal
+        int[] layout = new int[env.config.tableSize];
+        table.snapshot(layout);
+        int[] dealtSlots = new int[Math.min(emptySlots.size(), deck.size())];
+        for(int i = 0 ; i < dealtSlots.length ; i++){
+            int chosen = random.nextInt(deck.size());
+            dealtSlots[i] = emptySlots.get(i);
+            layout[dealtSlots[i]] = deck.remove(chosen);
+        }
+        if(dealtSlots.length > 0 && !setCache.hasSet(layout, env.util) && !replaceToCompleteSet(layout, dealtSlots)){
+            env.logger.info("no set on the table and in reach of the deck, reshuffling.");
+            deadTable = true;
+        }
+
+        if(dealtSlots.length > 0){
+            env.metrics.dealtCards.add(dealtSlots.length);
+            env.metrics.deckSize = deck.size();
+            env.metrics.tableSets = setCache.countSets(layout, env.util);
+        }
+        for(int slot : dealtSlots){
+            table.placeCard(layout[slot], slot);
             delay();
         }
         freezeAll(false);
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Swaps one of the cards about to be dealt with a card from the deck, so the table will have a legal set.
+     *
+     * @param layout     - the card per slot once the cards are dealt (-1 if none), updated with the swapped card.
+     * @param dealtSlots - the slots of the cards about to be dealt.
+     * @return           - true iff such a card was found in the deck.
      */
-    private void sleepUntilWokenOrTimeout() { 
-       try {
-        Thread.sleep(reshuffleTime%100);
-        }catch (InterruptedException e) { }         
+    private boolean replaceToCompleteSet(int[] layout, int[] dealtSlots){
+        int offset = deck.isEmpty() ? 0 : random.nextInt(deck.size());
+        for(int slot : dealtSlots){
+            int dealt = layout[slot];
+            for(int i = 0 ; i < deck.size() ; i++){
+                int j = (offset + i) % deck.size();
+                layout[slot] = deck.get(j);
+                if(setCache.hasSet(layout, env.util)){
+                    deck.set(j, dealt);
+                    return true;
+                }
+            }
+            layout[slot] = dealt;
+        }
+        return false;
+    }
+
+    /**
+     * Waits until a claim is queued, the game is terminated, or it is time to update the countdown display.
+     */
+    private synchronized void sleepUntilWokenOrTimeout() {
+        long now = System.currentTimeMillis();
+        long deadline = now + Math.max(1, Math.min(TIMER_DISPLAY_MILLIS, reshuffleTime - now));
+        long time;
+        while(!terminate && requests.size() == 0 && (time = deadline - System.currentTimeMillis()) > 0){
+            try{
+                this.wait(time);
+            }catch(InterruptedException ignored){}
+        }
     }
 
     /**
@@ -181,9 +308,15 @@ public class Dealer implements Runnable {
      */
     private synchronized void removeAllCardsFromTable() {
         freezeAll(true);
+        deadTable = false;
+        env.journal.reshuffle();
+        env.metrics.reshuffles.increment();
         // removing visually:
-        for(int i = 0 ; i < 12 ; i++){
+        for(int i = 0 ; i < env.config.tableSize ; i++){
+            int card = table.cardAt(i);
+            if(card == -1) continue;
             table.removeCard(i);
+            deck.add(card);
             delay();
         }
         // removing the tokens from the player's queue:
@@ -201,12 +334,23 @@ public class Dealer implements Runnable {
 
 
     //NEW:
-    public synchronized void addRequest(int playerId, int[] req){  
-        int[][] newRequest = new int[2][];
-        newRequest[0] = new int[1];
-        newRequest[0][0] = playerId;
-        newRequest[1] = req;
-        requests.put(newRequest);       
+    public void addRequest(int playerId, int[] req){
+        addRequest(playerId, req, table.version());
+    }
+
+    /**
+     * Queues a set claim of a player.
+     *
+     * @param playerId - the id of the claiming player.
+     * @param req      - the slots of the claimed set.
+     * @param version  - the table version the claim was made against (see Table::version).
+     */
+    public synchronized void addRequest(int playerId, int[] req, long version){
+        env.journal.claim(playerId, req, version);
+        env.metrics.claims.increment();
+        requests.put(playerId, req, version);
+        env.events.claimQueued(playerId, req, requests.size());
+        notifyAll(); // the dealer may be waiting for a claim
     }
 
     private void freezeAll(boolean val){
@@ -239,6 +383,7 @@ public class Dealer implements Runnable {
     }
 
     private void delay(){
+        if(env.config.tableDelayMillis <= 0) return; // wait(0) would wait forever
         try{
             this.wait(env.config.tableDelayMillis); 
         }catch(InterruptedException ignored){}
@@ -272,48 +417,79 @@ public class Dealer implements Runnable {
     }
     
 
-    private class PriorityQueue<T>{
+    /**
+     * A set claim of a player, made against a specific version of the table.
+     */
+    private static class Claim {
+
+        private int player;
+        private int[] slots = new int[0];
+        private long version;
+        private long nanos; // when the claim was made, for the verdict latency
+
+        private void set(int player, int[] slots, long version, long nanos) {
+            this.player = player;
+            if (this.slots.length != slots.length) this.slots = new int[slots.length];
+            System.arraycopy(slots, 0, this.slots, 0, slots.length);
+            this.version = version;
+            this.nanos = nanos;
+        }
+    }
 
-        private volatile Vector<T> vec;
-        private final int MAX;
-        private Dealer dealer;
+    /**
+     * The claims waiting for the dealer, in the order they were made: a ring of preallocated claims, at least one per
+     * player (a player has at most one claim waiting), so queueing and taking a claim allocate nothing.
+     */
+    private class ClaimRing {
+
+        private final Claim[] ring;
+        private final Dealer dealer;
+        private int head;
+        private int size;
 
-        public PriorityQueue(Dealer dealer) {
-            MAX = players.length;
-            vec = new Vector<>();
+        public ClaimRing(Dealer dealer) {
+            ring = new Claim[Math.max(1, players.length)];
+            for(int i = 0 ; i < ring.length ; i++)
+                ring[i] = new Claim();
             this.dealer = dealer;
         }
 
         public synchronized int size(){
-            return vec.size();
+            return size;
         }
 
-        public synchronized void put(T t){
-            while(size()>=MAX){
+        /**
+         * Queues a copy of a claim.
+         */
+        public synchronized void put(int player, int[] slots, long version){
+            while(size == ring.length){
                 try{
                     this.wait();
                 }catch(InterruptedException ignored){}
             }
-            vec.add(t);
+            ring[(head + size) % ring.length].set(player, slots, version, System.nanoTime());
+            size++;
         }
 
-        public synchronized T take(){
-            while(size()==0){
+        /**
+         * Takes the oldest claim, waiting for one if there is none.
+         *
+         * @param claim - filled with a copy of the claim taken.
+         */
+        public synchronized void take(Claim claim){
+            while(size == 0){
                 try{
                     this.wait();
                 }catch(InterruptedException ignored){}
             }
 
-            T t = vec.remove(0);
+            Claim taken = ring[head];
+            claim.set(taken.player, taken.slots, taken.version, taken.nanos);
+            head = (head + 1) % ring.length;
+            size--;
+            this.notifyAll();
             dealer.notifyAll();
-            return t;
         }
-
-        @Override
-        public String toString() {
-            return "PriorityQueue []";
-        }
-
     }
 
     //For Tests:
@@ -0,0 +1,187 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class computes the hints for the cards on the table on a background thread and publishes them to the
+ * subscribers, and to the console if config.hints is set. The dealer and player threads only flag that the table
+ * changed, they never wait for the hints. Nothing is computed while there is no one to publish the hints to.
+ */
+public class HintService implements Runnable {
+
+    /**
+     * Receives the hints whenever they are recomputed.
+     */
+    public interface Subscriber {
+
+        /**
+         * @param version - the table version the hints were computed for.
+         * @param sets    - the legal sets on the table, each one is a sorted array of slots.
+         */
+        void hintsChanged(long version, List<int[]> sets);
+    }
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The table to compute hints for.
+     */
+    private final Table table;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * The sets of recently seen table layouts.
+     */
+    private final SetCache setCache;
+
+    /**
+     * The thread computing the hints (null until the first request).
+     */
+    private Thread hintsThread;
+
+    /**
+     * True iff the table changed since the hints were last computed.
+     */
+    private volatile boolean dirty;
+
+    /**
+     * True iff the hints should be published even if the table did not change (e.g. for a new subscriber).
+     */
+    private volatile boolean forced;
+
+    /**
+     * True iff the hints thread should be terminated.
+     */
+    private volatile boolean terminate;
+
+    /**
+     * The table version the hints were last published for.
+     */
+    private long publishedVersion = -1;
+
+    public HintService(Env env, Table table) {
+        this.env = env;
+        this.table = table;
+        this.setCache = SetCache.of(env);
+    }
+
+    /**
+     * Adds a subscriber, which receives the hints of the current table and then every time they change.
+     */
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+        forced = true;
+        tableChanged();
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Called when the cards on the table change. Never blocks.
+     */
+    public void tableChanged() {
+        if (!env.config.hints && subscribers.isEmpty()) return;
+        dirty = true;
+        wakeUp();
+    }
+
+    /**
+     * Stops the hints thread.
+     */
+    public void terminate() {
+        terminate = true;
+        Thread thread;
+        synchronized (this) {
+            thread = hintsThread;
+        }
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    /**
+     * Waits until the hints thread ends (after terminate).
+     */
+    public void join() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = hintsThread;
+        }
+        if (thread != null) thread.join();
+    }
+
+    /**
+     * The hints thread starts here.
+     */
+    @Override
+    public void run() {
+        int[] slots = new int[env.config.tableSize];
+        while (!terminate) {
+            while (!dirty && !terminate)
+                LockSupport.park(this);
+            if (terminate) break;
+            dirty = false;
+            waitForTableToSettle();
+
+            long version = table.snapshot(slots);
+            if (version == publishedVersion && !forced) continue;
+            forced = false;
+            publishedVersion = version;
+
+            publish(version, slots, setCache.setsOf(slots, env.util));
+        }
+    }
+
+    private synchronized void wakeUp() {
+        if (terminate) return;
+        if (hintsThread == null) {
+            hintsThread = new Thread(this, "hints");
+            hintsThread.setDaemon(true);
+            hintsThread.start();
+        } else LockSupport.unpark(hintsThread);
+    }
+
+    /**
+     * Waits until the dealer stops placing or removing cards, so partially dealt tables are not reported.
+     */
+    private void waitForTableToSettle() {
+        if (env.config.tableDelayMillis <= 0) return;
+        long version = table.version();
+        while (!terminate) {
+            try {
+                Thread.sleep(env.config.tableDelayMillis * 2);
+            } catch (InterruptedException ignored) {}
+            long current = table.version();
+            if (current == version) return;
+            version = current;
+        }
+    }
+
+    private void publish(long version, int[] slots, List<int[]> sets) {
+        for (Subscriber subscriber : subscribers)
+            subscriber.hintsChanged(version, sets);
+
+        if (!env.config.hints || sets.isEmpty()) return;
+
+        // print all the hints at once
+        StringBuilder sb = new StringBuilder();
+        for (int[] set : sets) {
+            int[] cards = new int[set.length];
+            for (int i = 0; i < set.length; i++)
+                cards[i] = slots[set[i]];
+            sb.append("Hint: Set found: slots: ").append(Arrays.toString(set))
+                    .append(" features: ").append(Arrays.deepToString(env.util.cardsToFeatures(cards)))
+                    .append(System.lineSeparator());
+        }
+        System.out.print(sb);
+    }
+}
@@ -1,9 +1,11 @@
 package bguspl.set.ex;
 
-import java.util.Vector;
+import java.util.Random;
 import java.util.logging.Level;
 
 import bguspl.set.Env;
+import bguspl.set.GameState;
+import bguspl.set.ThreadLogger;
 
 /**
  * This class manages the players' threads and data
@@ -13,6 +15,11 @@ import bguspl.set.Env;
  */
 public class Player implements Runnable {
 
+    /**
+     * The interval between updates of the freeze display while the player is frozen (in milliseconds).
+     */
+    private static final long FREEZE_DISPLAY_MILLIS = 10;
+
     /**
      * The game environment object.
      */
@@ -37,7 +44,7 @@ public class Player implements Runnable {
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
      */
-    private Thread aiThread;
+    private ThreadLogger aiThread;
 
     /**
      * True iff the player is human (not a computer player).
@@ -50,17 +57,25 @@ public class Player implements Runnable {
     private volatile boolean terminate;
 
     /**
-     * The current score of the player.
+     * The current score of the player, its tokens and the time its freeze ends (Long.MAX_VALUE if not frozen) are
+     * kept in env.state.
      */
-    private volatile int score;
+    private final GameState state;
 
     //NEW:
     private Dealer dealer;
-    private Vector<Integer> tokens;
     private volatile boolean canNOTPlay = true;
-    private long freezeTimer = Long.MAX_VALUE;
+    private long freezeStart; // when the current freeze started
+    private final int[] claimSlots = new int[3]; // the slots of the last claim (the dealer queues a copy)
     private volatile boolean penaltyOrPointFreeze = false;;
 
+    /**
+     * How the computer player chooses its claims, and the number of penalties the player got.
+     */
+    private BotStrategy strategy = BotStrategy.RANDOM;
+    private Random random = new Random();
+    private volatile int penalties;
+
     /**
      * The class constructor.
      *
@@ -78,7 +93,7 @@ public class Player implements Runnable {
 
         //NEW:
         this.dealer = dealer;
-        tokens = new Vector<>();
+        this.state = env.state;
     }
 
     /**
@@ -103,32 +118,32 @@ public class Player implements Runnable {
      */
     private void createArtificialIntelligence() {
         // note: this is a very very smart AI (!) (kiddin...)
-        aiThread = new Thread(() -> {
+        aiThread = new ThreadLogger(() -> {
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");    
             while (!terminate) {  
                 if(!canNOTPlay & !penaltyOrPointFreeze){
                     //Reset:
-                    if(tokens.size() != 0){
-                            for(int i = 0 ; i < tokens.size() ; i++){
-                               keyPressed(tokens.get(i));
-                            }
+                    synchronized(dealer){
+                        for(int slot = 0 ; slot < env.config.tableSize ; slot++)
+                            if(state.hasToken(id, slot)) keyPressed(slot);
                     }
                     delay();
-                    // random Choose:
-                    int[] rand = randomKeyPresses();
-                        if(table.isLegitRequest(rand) && env.util.testSet(table.fromSlotsToCards(rand))){
-                            for(int i = 0 ; i < 3 ; i++){
-                                keyPressed(rand[i]);
+                    // choose a claim:
+                    int[] claim = strategy.claim(env, table, random);
+                        if(claim != null){
+                            for(int i = 0 ; i < claim.length ; i++){
+                                keyPressed(claim[i]);
                                 synchronized(this){
                                     this.notifyAll();
                                 }
                             }
                         }
                 }
+                else delay(); // frozen, or waiting for the dealer
             }
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
-        aiThread.start();
+        }, "computer-" + id, env.logger);
+        aiThread.startWithLog();
     }
 
     /**
@@ -146,19 +161,24 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
+        long waitStart = System.nanoTime();
         synchronized(dealer){ 
+            long lockWait = System.nanoTime() - waitStart;
+            env.metrics.dealerLockWait.record(lockWait);
+            env.events.keyPressed(id, slot, lockWait);
             if(!canNOTPlay & !penaltyOrPointFreeze){
-                if(tokens.contains(slot)){ 
-                    tokens.removeElement(slot);
+                if(state.hasToken(id, slot)){ 
+                    state.setToken(id, slot, false);
                     table.removeToken(id, slot); 
                 }
-                else if(tokens.size()<3 & table.slotToCard[slot] != null){
-                    tokens.add(slot); 
+                else if(state.tokenCount(id)<3 & table.cardAt(slot) != -1){
+                    state.setToken(id, slot, true); 
                     table.placeToken(id, slot);
-                    if(tokens.size() == 3){
+                    if(state.tokenCount(id) == 3){
                         penaltyOrPointFreeze = true;
-                        int[] myRec = {tokens.get(0), tokens.get(1), tokens.get(2)}; 
-                        dealer.addRequest(id, myRec);
+                        for(int i = 0 ; i < claimSlots.length ; i++)
+                            claimSlots[i] = state.tokenSlot(id, i);
+                        dealer.addRequest(id, claimSlots, table.version());
                     }
                 }
                 dealer.notifyAll();
@@ -177,10 +197,14 @@ public class Player implements Runnable {
     public void point() { 
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         
-        env.ui.setScore(id, ++score);
+        int score = state.score(id) + 1;
+        state.setScore(id, score);
+        env.ui.setScore(id, score);
         env.ui.setFreeze(id, env.config.pointFreezeMillis);
         
-        freezeTimer = System.currentTimeMillis() + env.config.pointFreezeMillis; 
+        freezeStart = System.currentTimeMillis();
+        state.setFreezeUntil(id, freezeStart + env.config.pointFreezeMillis);
+        env.events.verdict(id, true, env.config.pointFreezeMillis);
         penaltyOrPointFreeze = true;
     }
 
@@ -188,14 +212,39 @@ public class Player implements Runnable {
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
+        penalties++;
         env.ui.setFreeze(id, env.config.penaltyFreezeMillis);
-        freezeTimer = System.currentTimeMillis() + env.config.penaltyFreezeMillis; 
+        freezeStart = System.currentTimeMillis();
+        state.setFreezeUntil(id, freezeStart + env.config.penaltyFreezeMillis);
+        env.events.verdict(id, false, env.config.penaltyFreezeMillis);
 
         penaltyOrPointFreeze = true;
     }
 
+    /**
+     * Called when the dealer drops a claim made against cards that are no longer on the table.
+     */
+    public void rejectClaim() {
+        penaltyOrPointFreeze = false;
+    }
+
     public synchronized int score() {
-        return score;
+        return state.score(id);
+    }
+
+    public int penalties() {
+        return penalties;
+    }
+
+    /**
+     * Sets how a computer player chooses its claims.
+     *
+     * @param strategy - the strategy.
+     * @param seed     - the seed of the random choices of the strategy.
+     */
+    public void setStrategy(BotStrategy strategy, long seed) {
+        this.strategy = strategy;
+        this.random = new Random(seed);
     }
 
     //NEW:
@@ -204,11 +253,11 @@ public class Player implements Runnable {
     }
 
     public synchronized int getTokensSize(){
-        return tokens.size();
+        return state.tokenCount(id);
     }
 
     public synchronized void removeToken(int slot){
-        tokens.removeElement(slot);
+        state.setToken(id, slot, false);
     }
 
     public synchronized void removeTokens(int[] slots){
@@ -217,38 +266,39 @@ public class Player implements Runnable {
     }
 
     public void resetTokens(){
-        tokens = new Vector<>();
+        state.clearTokens(id);
     }
 
-    private synchronized void updateFreezeTimerDisplay(){        
+    private synchronized void updateFreezeTimerDisplay(){
+        long freezeTimer = state.freezeUntil(id);
+        if(freezeTimer == Long.MAX_VALUE){
+            // not frozen - sleep until the dealer notifies a verdict (instead of spinning)
+            try{
+                this.wait();
+            }catch(InterruptedException ignored){}
+            return;
+        }
         long time = freezeTimer - System.currentTimeMillis();
-        if(penaltyOrPointFreeze & System.currentTimeMillis() < freezeTimer){
+        if(time > 0){
             env.ui.setFreeze(id, time%10000);
-            penaltyOrPointFreeze = true;
+            try{
+                this.wait(Math.min(time, FREEZE_DISPLAY_MILLIS));
+            }catch(InterruptedException ignored){}
         }
-        if(time <= 0){
+        else{
             env.ui.setFreeze(id, 0);
             penaltyOrPointFreeze = false;
-            freezeTimer = Long.MAX_VALUE;
-            try{
-                this.wait();
-            }catch(InterruptedException ignored){}
+            state.setFreezeUntil(id, Long.MAX_VALUE);
+            env.events.freezeExpired(id, System.currentTimeMillis() - freezeStart);
         }
     }
 
     private void delay(){
         try{
-            Thread.sleep(200); 
+            Thread.sleep(env.config.computerDelayMillis);
         }catch(InterruptedException ignored){}
     }
 
-    private int[] randomKeyPresses(){
-        int[] rand = new int[3];
-        for(int i = 0 ; i < 3 ; i++)
-            rand[i] = (int)(Math.random()*12);
-        return rand;
-    }
-
     //For Tests:
 
     public synchronized boolean isPenaltyOrPointFreeze(){
@@ -260,7 +310,7 @@ public class Player implements Runnable {
     }
 
     public boolean isASlotEmpty(int slot){
-        return !tokens.contains(slot);
+        return !state.hasToken(id, slot);
     }
 
     public synchronized boolean isTerminateTrue(){
@@ -0,0 +1,276 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.SetMasks;
+import bguspl.set.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of the sets found on table layouts, shared by all the games of the process.
+ * <p>
+ * The sets of a table do not change when the values of a feature are permuted (e.g. red and green are swapped) or when
+ * the features themselves are permuted. Layouts are therefore cached by a canonical form: the values of every feature
+ * are relabeled in order of first appearance on the table, and then the features are sorted. Since the slots keep
+ * their order, the cached sets (as slots) are valid for every layout with the same canonical form.
+ * <p>
+ * On decks small enough for SetMasks (e.g. the stock 81 card deck), checking and counting sets goes to the masks
+ * instead, which is faster than a cache lookup and allocates nothing.
+ */
+public class SetCache {
+
+    /**
+     * The shared caches, one per deck shape (feature count and feature size).
+     */
+    private static final Map<Long, SetCache> caches = new HashMap<>();
+
+    /**
+     * The deck shape of the games sharing the cache (no game's config or util is kept, as the cache outlives them).
+     */
+    private final int featureCount;
+    private final int featureSize;
+    private final int deckSize;
+
+    /**
+     * The maximal number of canonical layouts to keep (config.setCacheSize of the game that created the cache).
+     */
+    private final int capacity;
+
+    /**
+     * The masks of all the legal sets of the deck (null if the deck is too large for them).
+     */
+    private final SetMasks masks;
+
+    private final Map<Key, Entry> entries;
+
+    private long hits;
+    private long misses;
+
+    SetCache(Config config) {
+        this.featureCount = config.featureCount;
+        this.featureSize = config.featureSize;
+        this.deckSize = config.deckSize;
+        this.capacity = config.setCacheSize;
+        this.masks = SetMasks.of(config);
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param env - the game environment object.
+     * @return    - the cache shared by all the games with the same deck shape.
+     */
+    public static SetCache of(Env env) {
+        Config config = env.config;
+        long shape = ((long) config.featureCount << 32) | config.featureSize;
+        synchronized (caches) {
+            return caches.computeIfAbsent(shape, ignored -> new SetCache(config));
+        }
+    }
+
+    /**
+     * Finds all the legal sets on a table layout.
+     *
+     * @param slots - the card per slot (-1 if none).
+     * @param util  - the utilities of the calling game, to find the sets of a layout that is not cached.
+     * @return      - the sets, each one a sorted array of slots (shared, must not be modified).
+     */
+    public List<int[]> setsOf(int[] slots, Util util) {
+        Key key = canonicalize(slots);
+        Entry entry = get(key);
+        if (entry != null && entry.sets != null) return entry.sets;
+
+        List<int[]> sets = Collections.unmodifiableList(findSets(slots, Integer.MAX_VALUE, util));
+        put(key, new Entry(sets, !sets.isEmpty()));
+        return sets;
+    }
+
+    /**
+     * Checks if there is a legal set on a table layout.
+     *
+     * @param slots - the card per slot (-1 if none).
+     * @param util  - the utilities of the calling game, to find the sets of a layout that is not cached.
+     * @return      - true iff there is at least one legal set on the table.
+     */
+    public boolean hasSet(int[] slots, Util util) {
+        if (masks != null) return masks.hasSet(slots);
+        Key key = canonicalize(slots);
+        Entry entry = get(key);
+        if (entry != null) return entry.hasSet;
+
+        boolean hasSet = !findSets(slots, 1, util).isEmpty();
+        put(key, new Entry(null, hasSet));
+        return hasSet;
+    }
+
+    /**
+     * Counts the legal sets on a table layout.
+     *
+     * @param slots - the card per slot (-1 if none).
+     * @param util  - the utilities of the calling game, to find the sets of a layout that is not cached.
+     * @return      - the number of legal sets on the table.
+     */
+    public int countSets(int[] slots, Util util) {
+        return masks != null ? masks.countSets(slots) : setsOf(slots, util).size();
+    }
+
+    /**
+     * Checks if there is a legal set in a collection of cards and the cards of a table layout together (e.g. the deck
+     * and the table). Such collections are not cached.
+     *
+     * @param cards - the cards besides the table.
+     * @param slots - the card per slot (-1 if none).
+     * @param util  - the utilities of the calling game.
+     * @return      - true iff there is at least one legal set made of the cards.
+     */
+    public boolean hasSet(List<Integer> cards, int[] slots, Util util) {
+        if (masks != null) {
+            long low = 0, high = 0;
+            for (int i = 0; i < cards.size(); i++) {
+                int card = cards.get(i);
+                low = SetMasks.withLow(low, card);
+                high = SetMasks.withHigh(high, card);
+            }
+            for (int card : slots) {
+                low = SetMasks.withLow(low, card);
+                high = SetMasks.withHigh(high, card);
+            }
+            return masks.hasSet(low, high);
+        }
+        List<Integer> all = new ArrayList<>(cards);
+        for (int card : slots)
+            if (card != -1) all.add(card);
+        return !util.findSets(all, 1).isEmpty();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Maps a table layout to its canonical form.
+     *
+     * @param slots - the card per slot (-1 if none).
+     * @return      - the canonical form of the layout.
+     */
+    Key canonicalize(int[] slots) {
+        int[][] columns = new int[featureCount][slots.length];
+        int[] labels = new int[featureSize];
+
+        for (int feature = 0, weight = 1; feature < featureCount; ++feature, weight *= featureSize) {
+            // relabel the values of the feature in order of first appearance
+            Arrays.fill(labels, -1);
+            int next = 0;
+            for (int slot = 0; slot < slots.length; slot++) {
+                if (slots[slot] == -1) {
+                    columns[feature][slot] = -1;
+                    continue;
+                }
+                int value = slots[slot] / weight % featureSize;
+                if (labels[value] == -1) labels[value] = next++;
+                columns[feature][slot] = labels[value];
+            }
+        }
+
+        // the order of the features does not matter either
+        Arrays.sort(columns, SetCache::compare);
+
+        int[] key = new int[featureCount * slots.length];
+        for (int feature = 0; feature < featureCount; feature++)
+            System.arraycopy(columns[feature], 0, key, feature * slots.length, slots.length);
+        return new Key(key);
+    }
+
+    private synchronized Entry get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) misses++;
+        else hits++;
+        return entry;
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    private List<int[]> findSets(int[] slots, int count, Util util) {
+        List<Integer> cards = new ArrayList<>();
+        int[] cardToSlot = new int[deckSize];
+        for (int slot = 0; slot < slots.length; slot++)
+            if (slots[slot] != -1) {
+                cards.add(slots[slot]);
+                cardToSlot[slots[slot]] = slot;
+            }
+
+        List<int[]> sets = new ArrayList<>();
+        for (int[] set : util.findSets(cards, count)) {
+            int[] setSlots = new int[set.length];
+            for (int i = 0; i < set.length; i++)
+                setSlots[i] = cardToSlot[set[i]];
+            Arrays.sort(setSlots);
+            sets.add(setSlots);
+        }
+        return sets;
+    }
+
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++)
+            if (a[i] != b[i]) return Integer.compare(a[i], b[i]);
+        return 0;
+    }
+
+    /**
+     * The canonical form of a table layout.
+     */
+    static class Key {
+
+        private final int[] form;
+        private final int hash;
+
+        private Key(int[] form) {
+            this.form = form;
+            this.hash = Arrays.hashCode(form);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(form, ((Key) o).form);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The cached result for a canonical layout.
+     */
+    private static class Entry {
+
+        /**
+         * All the sets (as slots), or null if only hasSet is known.
+         */
+        private final List<int[]> sets;
+        private final boolean hasSet;
+
+        private Entry(List<int[]> sets, boolean hasSet) {
+            this.sets = sets;
+            this.hasSet = hasSet;
+        }
+    }
+}
@@ -1,17 +1,15 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameState;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
 import java.util.Vector;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * This class contains the data that is visible to the player.
  *
- * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv env.state.slotCard(x) == y iff env.state.cardSlot(y) == x
  */
 public class Table {
 
@@ -21,14 +19,22 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Guards the slot map in env.state: the card per slot (-1 if none), readable without holding the table monitor,
+     * and the table version at which each slot was last changed. Readers use optimistic reads and never block writers.
+     * The card map (the slot per card) in env.state is guarded by the table monitor.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    private final StampedLock viewLock = new StampedLock();
+    private final GameState state;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Incremented on every change to the cards on the table.
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    private long version;
+
+    /**
+     * Computes the hints for the table in the background.
+     */
+    private final HintService hintService;
 
     /**
      * Constructor for testing.
@@ -39,9 +45,11 @@ public class Table {
      */
     public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
 
-        this.env = env;
-        this.slotToCard = slotToCard;
-        this.cardToSlot = cardToSlot;
+        this(env);
+        for (int i = 0; i < env.config.tableSize; i++)
+            state.setSlotCard(i, slotToCard[i] == null ? -1 : slotToCard[i]);
+        for (int i = 0; i < cardToSlot.length; i++)
+            state.setCardSlot(i, cardToSlot[i] == null ? -1 : cardToSlot[i]);
     }
 
     /**
@@ -51,20 +59,16 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this.env = env;
+        state = env.state;
+        hintService = new HintService(env, this);
     }
 
     /**
-     * This method prints all possible legal sets of cards that are currently on the table.
+     * @return - the service computing the hints for this table (subscribe to it to receive the hints).
      */
-    public void hints() { 
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-        });
+    public HintService hintService() {
+        return hintService;
     }
 
     /**
@@ -74,8 +78,8 @@ public class Table {
      */
     public synchronized int countCards() {
         int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            if (state.slotCard(slot) != -1)
                 ++cards;
         return cards;
     }
@@ -87,33 +91,41 @@ public class Table {
      *
      * @post - the card placed is on the table, in the assigned slot.
      */
-    public synchronized void placeCard(int card, int slot) {
+    public void placeCard(int card, int slot) {
         try {
             Thread.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+        synchronized (this) {
+            state.setCardSlot(card, slot);
+            updateView(slot, card);
+            env.journal.deal(slot, card);
 
-        //NEW:
-        env.ui.placeCard(card, slot);
+            //NEW:
+            env.ui.placeCard(card, slot);
+        }
     }
 
     /**
      * Removes a card from a grid slot on the table.
      * @param slot - the slot from which to remove the card.
      */
-    public synchronized void removeCard(int slot) {
+    public void removeCard(int slot) {
         try {
             Thread.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        // NEW:
-        slotToCard[slot] = null;
-        // removing the players tokens:
-        env.ui.removeTokens(slot);
-        // removing the card:
-        env.ui.removeCard(slot);
+        synchronized (this) {
+            // NEW:
+            int card = state.slotCard(slot);
+            if (card != -1) state.setCardSlot(card, -1);
+            updateView(slot, -1);
+            env.journal.remove(slot);
+            // removing the players tokens:
+            env.ui.removeTokens(slot);
+            // removing the card:
+            env.ui.removeCard(slot);
+        }
     }
 
     /**
@@ -122,6 +134,7 @@ public class Table {
      * @param slot   - the slot on which to place the token.
      */
     public void placeToken(int player, int slot) {
+        env.journal.token(player, slot);
         env.ui.placeToken(player, slot);
     }
 
@@ -132,24 +145,122 @@ public class Table {
      * @return       - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot) {
-        env.ui.removeToken(player, slot);       
+        env.journal.tokenRemoved(player, slot);
+        env.ui.removeToken(player, slot);
         return true;
     }
 
     //NEW:
 
-    public synchronized int[] fromSlotsToCards(int[] slots){
-        int[] cards = new int[slots.length];
-        for(int i = 0 ; i < cards.length ; i++){
-            cards[i] = slotToCard[slots[i]];
+    /**
+     * Copies the cards currently on the table into the given array, without blocking writers.
+     *
+     * @param slots - an array of at least config.tableSize entries, filled with the card per slot (-1 if none).
+     * @return      - the version of the table the copy was taken from.
+     */
+    public long snapshot(int[] slots) {
+        long stamp = viewLock.tryOptimisticRead();
+        long snapshotVersion = version;
+        copySlotCards(slots);
+        if (!viewLock.validate(stamp)) {
+            stamp = viewLock.readLock();
+            try {
+                snapshotVersion = version;
+                copySlotCards(slots);
+            } finally {
+                viewLock.unlockRead(stamp);
+            }
+        }
+        return snapshotVersion;
+    }
+
+    /**
+     * @return - the current version of the table (incremented on every card placed or removed).
+     */
+    public long version() {
+        long stamp = viewLock.tryOptimisticRead();
+        long currentVersion = version;
+        if (!viewLock.validate(stamp)) {
+            stamp = viewLock.readLock();
+            try {
+                currentVersion = version;
+            } finally {
+                viewLock.unlockRead(stamp);
+            }
+        }
+        return currentVersion;
+    }
+
+    /**
+     * @param slot - the slot to look at.
+     * @return     - the card placed in the slot (-1 if none).
+     */
+    public int cardAt(int slot) {
+        long stamp = viewLock.tryOptimisticRead();
+        int card = state.slotCard(slot);
+        if (!viewLock.validate(stamp)) {
+            stamp = viewLock.readLock();
+            try {
+                card = state.slotCard(slot);
+            } finally {
+                viewLock.unlockRead(stamp);
+            }
+        }
+        return card;
+    }
+
+    /**
+     * Checks whether a claim made against an older version of the table is no longer valid.
+     *
+     * @param slots        - the slots of the claim.
+     * @param claimVersion - the table version the claim was made against.
+     * @return             - true iff any of the slots changed after claimVersion.
+     */
+    public boolean isStale(int[] slots, long claimVersion) {
+        long stamp = viewLock.tryOptimisticRead();
+        boolean stale = changedSince(slots, claimVersion);
+        if (!viewLock.validate(stamp)) {
+            stamp = viewLock.readLock();
+            try {
+                stale = changedSince(slots, claimVersion);
+            } finally {
+                viewLock.unlockRead(stamp);
+            }
         }
+        return stale;
+    }
+
+    public int[] fromSlotsToCards(int[] slots){
+        int[] cards = new int[slots.length];
+        fromSlotsToCards(slots, cards);
         return cards;
     }
 
-    public synchronized Vector<Integer> getEmptySlots(){
+    /**
+     * Copies the cards in the given slots into the given array (-1 for an empty slot), without allocating.
+     *
+     * @param slots - the slots to look at.
+     * @param cards - an array of at least slots.length entries, filled with the card per slot.
+     */
+    public void fromSlotsToCards(int[] slots, int[] cards){
+        long stamp = viewLock.tryOptimisticRead();
+        copyCards(slots, cards);
+        if (!viewLock.validate(stamp)) {
+            stamp = viewLock.readLock();
+            try {
+                copyCards(slots, cards);
+            } finally {
+                viewLock.unlockRead(stamp);
+            }
+        }
+    }
+
+    public Vector<Integer> getEmptySlots(){
+        int[] slots = new int[env.config.tableSize];
+        snapshot(slots);
         Vector<Integer> emptySlots = new Vector<>();
-        for(int i = 0 ; i < 12 ; i++){
-            if(slotToCard[i]==null){
+        for(int i = 0 ; i < slots.length ; i++){
+            if(slots[i] == -1){
                 emptySlots.add(i);
             }
         }
@@ -161,14 +272,42 @@ public class Table {
             removeToken(player, slots[i]);
     }
 
-    public synchronized boolean isLegitRequest(int[] slots){
-        for(int i = 0 ; i < slots.length ; i++){
-            if(slotToCard[slots[i]] == null)
+    public boolean isLegitRequest(int[] slots){
+        int[] cards = fromSlotsToCards(slots);
+        for(int i = 0 ; i < cards.length ; i++){
+            if(cards[i] == -1)
                 return false;
         }
         boolean differentSlots = (slots[0] != slots[1]) & (slots[1] != slots[2]) & (slots[0] != slots[2]);
         return differentSlots;
     }
 
+    private void updateView(int slot, int card) {
+        long stamp = viewLock.writeLock();
+        try {
+            state.setSlotCard(slot, card);
+            state.setSlotVersion(slot, ++version);
+        } finally {
+            viewLock.unlockWrite(stamp);
+        }
+        hintService.tableChanged();
+    }
+
+    private void copyCards(int[] slots, int[] cards) {
+        for (int i = 0; i < slots.length; i++)
+            cards[i] = state.slotCard(slots[i]);
+    }
+
+    private void copySlotCards(int[] slots) {
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            slots[slot] = state.slotCard(slot);
+    }
+
+    private boolean changedSince(int[] slots, long claimVersion) {
+        for (int slot : slots)
+            if (state.slotVersion(slot) > claimVersion)
+                return true;
+        return false;
+    }
 
 }
@@ -0,0 +1,58 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AsyncLogHandlerTest {
+
+    @Test
+    void publish_AllRecordsWrittenInOrderPerThread(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("test.log");
+        AsyncLogHandler handler = new AsyncLogHandler(file.toString());
+        handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                return formatMessage(record) + "\n";
+            }
+        });
+
+        // more records than the ring holds, from several threads
+        int threads = 4;
+        int records = 20_000;
+        Thread[] loggers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            loggers[t] = new Thread(() -> {
+                for (int i = 0; i < records; i++) {
+                    LogRecord record = new LogRecord(Level.FINE, "{0,number,#} {1,number,#}");
+                    record.setParameters(new Object[]{thread, i});
+                    handler.publish(record);
+                }
+            });
+            loggers[t].start();
+        }
+        for (Thread thread : loggers)
+            thread.join();
+        handler.flush();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(threads * records, lines.size());
+        int[] next = new int[threads];
+        for (String line : lines) {
+            String[] fields = line.split(" ");
+            int thread = Integer.parseInt(fields[0]);
+            assertEquals(next[thread]++, Integer.parseInt(fields[1]));
+        }
+        handler.close();
+    }
+}
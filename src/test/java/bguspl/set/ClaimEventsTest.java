@@ -0,0 +1,83 @@
+package bguspl.set;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimEventsTest {
+
+    Logger logger = new MockLogger();
+
+    private ClaimEvents create(boolean enabled) {
+        Properties properties = new Properties();
+        properties.put("FlightRecorderEvents", Boolean.toString(enabled));
+        return ClaimEvents.create(new Config(logger, properties), logger);
+    }
+
+    @Test
+    void create_DisabledRecordsNothing() {
+        assertSame(ClaimEvents.NONE, create(false));
+    }
+
+    @Test
+    void claimLifecycle_CommittedWhileRecording(@TempDir Path directory) throws Exception {
+        ClaimEvents events = create(true);
+        assertNotSame(ClaimEvents.NONE, events);
+
+        // not recorded: no recording is on yet
+        events.keyPressed(0, 0, 0);
+
+        Path file = directory.resolve("claims.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"KeyPress", "ClaimQueued", "ClaimValidated", "Verdict", "FreezeExpired"})
+                recording.enable("bguspl.set." + name).withThreshold(Duration.ZERO);
+            recording.start();
+            events.keyPressed(1, 7, 1_000);
+            events.claimQueued(1, new int[]{3, 5, 7}, 2);
+            long claim = System.nanoTime();
+            events.claimValidated(1, new int[]{3, 5, 7}, claim, claim + 500, ClaimEvents.PENALTY);
+            events.verdict(1, false, 3000);
+            events.freezeExpired(1, 3002);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+        assertEquals(5, recorded.size());
+        for (RecordedEvent event : recorded)
+            assertEquals(1, event.getInt("player"));
+
+        RecordedEvent keyPress = find(recorded, "bguspl.set.KeyPress");
+        assertEquals(7, keyPress.getInt("slot"));
+        assertEquals(1_000, keyPress.getDuration("lockWait").toNanos());
+
+        RecordedEvent validated = find(recorded, "bguspl.set.ClaimValidated");
+        assertEquals("[3, 5, 7]", validated.getString("slots"));
+        assertEquals(500, validated.getDuration("queueTime").toNanos());
+        assertEquals(ClaimEvents.PENALTY, validated.getString("verdict"));
+
+        assertFalse(find(recorded, "bguspl.set.Verdict").getBoolean("point"));
+        assertEquals(3002, find(recorded, "bguspl.set.FreezeExpired").getDuration("frozen").toMillis());
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).findFirst()
+                .orElseThrow(() -> new AssertionError("no " + name + " event"));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComplementTableTest {
+
+    @TempDir
+    Path directory;
+    Logger logger = new MockLogger();
+    Config config;
+    Path file;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "5");
+        properties.put("PrecomputedTablesDir", directory.toString());
+        config = new Config(logger, properties);
+        file = directory.resolve("complements-5x3.bin");
+    }
+
+    @Test
+    void complement_CompletesEveryPair() throws Exception {
+        ComplementTable table = ComplementTable.open(file, config, logger);
+        UtilImpl util = new UtilImpl(config);
+        for (int card1 = 0; card1 < config.deckSize; card1++)
+            for (int card2 = 0; card2 < config.deckSize; card2++) {
+                if (card1 == card2) continue;
+                int complement = table.complement(card1, card2);
+                assertTrue(util.testSet(new int[]{card1, card2, complement}), card1 + ", " + card2 + ", " + complement);
+            }
+        assertThrows(IllegalArgumentException.class, () -> table.complement(5, 5));
+    }
+
+    @Test
+    void open_MapsTheExistingFileAndRebuildsAStaleOne() throws Exception {
+        ComplementTable.open(file, config, logger);
+        long size = Files.size(file);
+
+        // a file of the current version is mapped as is
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(2).order(ByteOrder.nativeOrder()).putChar(0, (char) 7), ComplementTable.HEADER_BYTES);
+        }
+        assertEquals(7, ComplementTable.open(file, config, logger).complement(0, 1));
+
+        // while one of another version is rebuilt
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(0, ComplementTable.VERSION + 1), 4);
+        }
+        assertEquals(2, ComplementTable.open(file, config, logger).complement(0, 1));
+        assertEquals(size, Files.size(file));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count()); // no temporary file is left behind
+        }
+    }
+
+    @Test
+    void findSets_SameSetsWithTheTable() {
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; card += 7)
+            deck.add(card);
+
+        ComplementTable table = ComplementTable.shared(config, logger);
+        assertNotNull(table);
+        assertSame(table, ComplementTable.shared(config, logger));
+        List<int[]> expected = new UtilImpl(config).findSets(deck, Integer.MAX_VALUE);
+        List<int[]> actual = new UtilImpl(config, table).findSets(deck, Integer.MAX_VALUE);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertArrayEquals(expected.get(i), actual.get(i));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
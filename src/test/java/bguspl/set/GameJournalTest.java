@@ -0,0 +1,97 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameJournalTest {
+
+    @TempDir
+    Path directory;
+    Path file;
+    Logger logger = new MockLogger();
+    long now;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("JournalSnapshotInterval", "4");
+        Config config = new Config(logger, properties);
+        file = directory.resolve("game.journal");
+
+        // one record every 10 millis: slot i gets card i at 10 * (i + 1), then tokens and a point
+        GameJournal journal = new GameJournal(logger, config, file, () -> now);
+        for (int slot = 0; slot < config.tableSize; slot++) {
+            now += 10;
+            journal.deal(slot, slot);
+        }
+        now += 10;
+        journal.token(1, 0);
+        now += 10;
+        journal.token(1, 1);
+        now += 10;
+        journal.claim(1, new int[]{0, 1, 2}, 12);
+        now += 10;
+        journal.verdict(1, GameJournal.POINT);
+        journal.score(1, 1);
+        now += 10;
+        journal.remove(0);
+        journal.close();
+    }
+
+    @Test
+    void seek_RestoresStateAtAnyTime() throws Exception {
+        GameReplay replay = new GameReplay(logger, file);
+        assertTrue(replay.snapshots() > 1);
+
+        replay.seek(55, null);
+        assertEquals(4, replay.cardAt(4));
+        assertEquals(-1, replay.cardAt(5));
+
+        replay.seek(150, null);
+        assertTrue(replay.hasToken(1, 0));
+        assertEquals(0, replay.score(1));
+
+        replay.seek(Long.MAX_VALUE, null);
+        assertEquals(-1, replay.cardAt(0));
+        assertFalse(replay.hasToken(1, 0));
+        assertTrue(replay.hasToken(1, 1));
+        assertEquals(1, replay.score(1));
+
+        // and back again
+        replay.seek(0, null);
+        assertEquals(-1, replay.cardAt(0));
+        assertEquals(0, replay.score(1));
+    }
+
+    @Test
+    void unclosedJournal_IndexIsRebuilt() throws Exception {
+        // drop the index and the last byte of the records, as if the game crashed
+        byte[] bytes = Files.readAllBytes(file);
+        long indexOffset = ByteBuffer.wrap(bytes, bytes.length - GameJournal.TRAILER_BYTES, Long.BYTES).getLong();
+        Files.write(file, Arrays.copyOf(bytes, (int) indexOffset - 1));
+
+        GameReplay replay = new GameReplay(logger, file);
+        assertTrue(replay.snapshots() > 1);
+        replay.seek(Long.MAX_VALUE, null);
+        assertEquals(0, replay.cardAt(0)); // the removal was cut off
+        assertEquals(1, replay.score(1));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
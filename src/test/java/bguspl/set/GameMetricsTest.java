@@ -0,0 +1,73 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameMetricsTest {
+
+    @Test
+    void histogram_PercentilesWithinBucketPrecision() {
+        GameMetrics.Histogram histogram = new GameMetrics.Histogram();
+        for (long value = 1; value <= 100_000; value++)
+            histogram.record(value * 1000);
+
+        double precision = 1.0 / GameMetrics.Histogram.SUB_BUCKETS;
+        assertEquals(50_000_000, histogram.percentile(0.5), 50_000_000 * precision);
+        assertEquals(99_000_000, histogram.percentile(0.99), 99_000_000 * precision);
+        assertEquals(1000, histogram.percentile(0), 1000 * precision);
+
+        GameMetrics.Summary summary = histogram.summary();
+        assertEquals(100_000, summary.getCount());
+        assertEquals(100_000, summary.getMax());
+        assertEquals(50_000.5, summary.getMean(), 0.001);
+
+        histogram.reset();
+        assertEquals(0, histogram.summary().getCount());
+    }
+
+    @Test
+    void histogram_BucketsCoverAllValues() {
+        long previous = -1;
+        for (int bucket = 0; bucket <= GameMetrics.Histogram.bucket(Long.MAX_VALUE); bucket++) {
+            long lowest = GameMetrics.Histogram.lowest(bucket);
+            assertTrue(lowest > previous);
+            assertEquals(bucket, GameMetrics.Histogram.bucket(lowest));
+            assertEquals(bucket - 1, GameMetrics.Histogram.bucket(lowest - 1));
+            previous = lowest;
+        }
+    }
+
+    @Test
+    void register_AttributesReadableThroughJmx() throws Exception {
+        GameMetrics metrics = new GameMetrics();
+        metrics.register(new MockLogger());
+        metrics.claims.add(3);
+        metrics.deckSize = 42;
+        metrics.verdictLatency.record(2_000);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(GameMetrics.OBJECT_NAME);
+        try {
+            assertEquals(3L, server.getAttribute(name, "Claims"));
+            assertEquals(42, server.getAttribute(name, "DeckSize"));
+            CompositeData latency = (CompositeData) server.getAttribute(name, "VerdictLatency");
+            assertEquals(1L, latency.get("count"));
+            assertEquals(2.0, (double) latency.get("p50"), 2.0 / GameMetrics.Histogram.SUB_BUCKETS);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
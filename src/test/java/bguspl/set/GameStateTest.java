@@ -0,0 +1,119 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameStateTest {
+
+    Config config;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "1");
+        properties.put("Rows", "10");
+        properties.put("Columns", "7"); // more slots than a token word holds
+        config = new Config(new MockLogger(), properties);
+    }
+
+    @Test
+    void arenaRecords_DoNotOverlapAndAreReused() {
+        GameStateArena arena = new GameStateArena(GameState.recordBytes(config), 2);
+        GameState[] states = new GameState[3];
+        for (int i = 0; i < states.length; i++)
+            states[i] = arena.allocate(config);
+        assertEquals(3, arena.liveRecords());
+        long capacity = arena.capacityBytes();
+
+        fill(states[1]);
+        for (GameState state : new GameState[]{states[0], states[2]}) {
+            assertEquals(-1, state.slotCard(config.tableSize - 1));
+            assertEquals(-1, state.cardSlot(config.deckSize - 1));
+            assertEquals(0, state.slotVersion(0));
+            assertEquals(0, state.tokenCount(config.players - 1));
+            assertEquals(0, state.score(config.players - 1));
+            assertEquals(Long.MAX_VALUE, state.freezeUntil(0));
+            assertTrue(state.deck().isEmpty());
+        }
+
+        // a released record is cleared and reused, the arena does not grow
+        states[1].release();
+        states[1].release();
+        assertEquals(2, arena.liveRecords());
+        GameState reused = arena.allocate(config);
+        assertEquals(-1, reused.slotCard(config.tableSize - 1));
+        assertEquals(0, reused.score(config.players - 1));
+        assertTrue(reused.deck().isEmpty());
+        assertEquals(capacity, arena.capacityBytes());
+    }
+
+    @Test
+    void tokens_MasksBeyondOneWord() {
+        GameState state = GameState.create(config);
+        int last = config.tableSize - 1;
+        state.setToken(1, 3, true);
+        state.setToken(1, last, true);
+        state.setToken(1, 64, true);
+        assertTrue(state.hasToken(1, last));
+        assertFalse(state.hasToken(0, last));
+        assertFalse(state.hasToken(1, last - 64)); // the same bit in the other word
+        assertEquals(3, state.tokenCount(1));
+        assertEquals(3, state.tokenSlot(1, 0));
+        assertEquals(64, state.tokenSlot(1, 1));
+        assertEquals(last, state.tokenSlot(1, 2));
+        assertEquals(-1, state.tokenSlot(1, 3));
+
+        state.setToken(1, 64, false);
+        assertEquals(last, state.tokenSlot(1, 1));
+        state.clearTokens(1);
+        assertEquals(0, state.tokenCount(1));
+    }
+
+    @Test
+    void deck_BehavesAsList() {
+        List<Integer> deck = GameState.create(config).deck();
+        for (int card = 0; card < 5; card++)
+            deck.add(card);
+        assertEquals(2, (int) deck.remove(2));
+        deck.set(0, 7);
+        deck.add(1, 9);
+        assertEquals(Arrays.asList(7, 9, 1, 3, 4), deck);
+        assertThrows(IndexOutOfBoundsException.class, () -> deck.get(5));
+
+        deck.clear();
+        for (int card = 0; card < config.deckSize; card++)
+            deck.add(card);
+        assertThrows(IllegalStateException.class, () -> deck.add(0));
+    }
+
+    private void fill(GameState state) {
+        for (int slot = 0; slot < config.tableSize; slot++) {
+            state.setSlotCard(slot, slot);
+            state.setSlotVersion(slot, slot + 1);
+        }
+        for (int card = 0; card < config.deckSize; card++) {
+            state.setCardSlot(card, card % config.tableSize);
+            state.deck().add(card);
+        }
+        for (int player = 0; player < config.players; player++) {
+            for (int slot = 0; slot < config.tableSize; slot++)
+                state.setToken(player, slot, true);
+            state.setScore(player, 10 + player);
+            state.setFreezeUntil(player, player);
+        }
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
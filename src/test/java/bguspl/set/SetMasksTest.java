@@ -0,0 +1,72 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SetMasksTest {
+
+    Config config;
+    SetMasks masks;
+
+    @BeforeEach
+    void setUp() {
+        config = new Config(new MockLogger(), new Properties());
+        masks = SetMasks.of(config);
+    }
+
+    @Test
+    void lines_AllTheSetsOfTheDeck() {
+        assertEquals(1080, masks.lines());
+        assertEquals(1080, masks.countSets(-1L, -1L));
+        assertFalse(masks.hasSet(0, 0));
+        assertSame(masks, SetMasks.of(config));
+    }
+
+    @Test
+    void hasSetAndCountSets_AgreeWithFindSets() {
+        UtilImpl util = new UtilImpl(config);
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; card++)
+            deck.add(card);
+
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            Collections.shuffle(deck, random);
+            int[] layout = new int[12];
+            for (int slot = 0; slot < layout.length; slot++)
+                layout[slot] = slot % 5 == 4 ? -1 : deck.get(slot);
+
+            List<Integer> cards = new ArrayList<>();
+            for (int card : layout)
+                if (card != -1) cards.add(card);
+            int sets = util.findSets(cards, Integer.MAX_VALUE).size();
+            assertEquals(sets, masks.countSets(layout));
+            assertEquals(sets > 0, masks.hasSet(layout));
+        }
+    }
+
+    @Test
+    void of_NullForLargeDecks() {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "5");
+        assertNull(SetMasks.of(new Config(new MockLogger(), properties)));
+        properties.put("FeatureCount", "3");
+        properties.put("FeatureSize", "4");
+        assertNull(SetMasks.of(new Config(new MockLogger(), properties)));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
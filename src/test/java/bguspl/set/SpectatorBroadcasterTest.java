@@ -0,0 +1,109 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectatorBroadcasterTest {
+
+    SpectatorBroadcaster broadcaster;
+    SocketChannel channel;
+    SpectatorView view = new SpectatorView(null);
+
+    private void start(int bufferKilobytes) throws IOException {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        properties.put("UiRefreshHz", "100");
+        properties.put("SpectatorBufferKilobytes", Integer.toString(bufferKilobytes));
+        Logger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        broadcaster = new SpectatorBroadcaster(logger, config, null, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    private void connect() throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), broadcaster.port()));
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Feeds the view from the socket until the condition holds (or fails after a timeout).
+     */
+    private void readUntil(BooleanSupplier condition) throws Exception {
+        ByteBuffer chunk = ByteBuffer.allocate(8192);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(view.synced() && condition.getAsBoolean())) {
+            assertTrue(System.currentTimeMillis() < deadline, "spectator view did not catch up");
+            chunk.clear();
+            if (channel.read(chunk) == 0) Thread.sleep(5);
+            chunk.flip();
+            view.accept(chunk);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (channel != null) channel.close();
+        if (broadcaster != null) broadcaster.dispose();
+    }
+
+    @Test
+    void spectator_GetsSnapshotAndThenEvents() throws Exception {
+        start(64);
+        broadcaster.placeCard(42, 3);
+        broadcaster.placeToken(1, 3);
+        broadcaster.setScore(2, 5);
+
+        connect();
+        readUntil(() -> view.cardAt(3) == 42 && view.hasToken(1, 3) && view.score(2) == 5);
+
+        broadcaster.removeToken(1, 3);
+        broadcaster.placeCard(7, 0);
+        broadcaster.setFreeze(0, 3000);
+        broadcaster.setScore(2, 4);
+        broadcaster.setCountdown(59000, false);
+        broadcaster.announceWinner(new int[]{2});
+
+        readUntil(() -> view.winners() != null);
+        assertFalse(view.hasToken(1, 3));
+        assertEquals(7, view.cardAt(0));
+        assertEquals(3000, view.freeze(0));
+        assertEquals(4, view.score(2));
+        assertEquals(59000, view.countdown());
+        assertArrayEquals(new int[]{2}, view.winners());
+    }
+
+    @Test
+    void slowSpectator_CatchesUpWithSnapshot() throws Exception {
+        start(1);
+        connect();
+        readUntil(() -> true);
+
+        // flood the spectator without reading, more than its buffer and the socket buffers can hold
+        for (int i = 1; i <= 200_000; i++) {
+            broadcaster.setFreeze(i % 3, i);
+            broadcaster.placeCard(i % 81, i % 12);
+        }
+        broadcaster.setScore(1, 9);
+
+        readUntil(() -> view.score(1) == 9);
+        assertEquals(200_000, view.freeze(200_000 % 3));
+        assertEquals(200_000 % 81, view.cardAt(200_000 % 12));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.NullUserInterface;
+import bguspl.set.UtilImpl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Guards the bytes allocated per operation on the paths every claim goes through, once they are warmed up (so the
+ * JIT compiler had its chance to remove short lived objects).
+ * The budgets are 0 (less than a byte per operation on average), and can be raised with -DallocationBudget.name=bytes.
+ */
+class AllocationBudgetTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int OPERATIONS = 20_000;
+
+    // the slots of cards 0, 1 and 3, which are not a set
+    private static final int[] NON_SET = {0, 1, 3};
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    Env env;
+    Table table;
+    Dealer dealer;
+    Player[] players;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "0");
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config));
+
+        table = new Table(env);
+        players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Player(env, dealer, table, i, true);
+            players[i].setCanPlay(false); // i.e. may play
+        }
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot, slot);
+    }
+
+    @Test
+    void keyPressed_PlaceAndRemoveToken() {
+        Player player = players[0];
+        assertWithinBudget("keyPressed", () -> {
+            player.keyPressed(5);
+            player.keyPressed(5);
+        });
+        assertTrue(player.isASlotEmpty(5));
+    }
+
+    @Test
+    void addRequest_QueueAndDropStaleClaim() {
+        Player player = players[1];
+        assertWithinBudget("addRequest", () -> {
+            dealer.addRequest(player.id, NON_SET, -1);
+            dealer.removeCardsFromTable();
+        });
+        assertTrue(dealer.isRequestsEmpty());
+    }
+
+    @Test
+    void claimVerification_KeyPressesToPenalty() {
+        Player player = players[0];
+        assertWithinBudget("claimVerification", () -> {
+            for (int slot : NON_SET)
+                player.keyPressed(slot);
+            dealer.removeCardsFromTable();
+            // lift the penalty freeze (the player thread would) and take the tokens back
+            player.rejectClaim();
+            for (int slot : NON_SET)
+                player.keyPressed(slot);
+        });
+        assertEquals(0, player.score());
+        assertTrue(player.penalties() > 0);
+    }
+
+    @Test
+    void placeCardAndRemoveCard() {
+        assertWithinBudget("placeCard", () -> {
+            table.removeCard(11);
+            table.placeCard(11, 11);
+        });
+        assertEquals(11, table.cardAt(11));
+    }
+
+    @Test
+    void hasSet() {
+        SetCache cache = SetCache.of(env);
+        int[] layout = new int[env.config.tableSize];
+        table.snapshot(layout);
+        boolean[] hasSet = new boolean[1];
+        assertWithinBudget("hasSet", () -> hasSet[0] = cache.hasSet(layout, env.util));
+        assertTrue(hasSet[0]);
+    }
+
+    private void assertWithinBudget(String name, Runnable operation) {
+        long budget = Long.getLong("allocationBudget." + name, 0);
+        for (int i = 0; i < WARMUP; i++)
+            operation.run();
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < OPERATIONS; i++)
+            operation.run();
+        long perOperation = (threads.getThreadAllocatedBytes(thread) - before) / OPERATIONS;
+
+        assertTrue(perOperation <= budget,
+                name + " allocated " + perOperation + " bytes per operation, over its budget of " + budget);
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -93,12 +93,9 @@ public class DealerTest {
     }
 
     private int[] fillSomeSlots() {
-        table.slotToCard[1] = 3;
-        table.slotToCard[2] = 5;
-        table.slotToCard[3] = 7;
-        table.cardToSlot[3] = 1;
-        table.cardToSlot[5] = 2;
-        table.cardToSlot[7] = 3;
+        table.placeCard(3, 1);
+        table.placeCard(5, 2);
+        table.placeCard(7, 3);
 
         int[] slots = {1, 2, 3};
         return slots;
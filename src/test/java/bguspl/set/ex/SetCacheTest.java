@@ -0,0 +1,90 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class SetCacheTest {
+
+    SetCache cache;
+    Util util;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("SetCacheSize", "2");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+        cache = new SetCache(config);
+    }
+
+    // features are written as base 3 digits, e.g. 0x1021 is the card with features 1, 0, 2, 1
+    private static int card(int digits) {
+        int card = 0;
+        for (int weight = 1; digits != 0; digits >>= 4, weight *= 3)
+            card += (digits & 0xF) * weight;
+        return card;
+    }
+
+    @Test
+    void canonicalize_FeaturePermutationsAreEqual() {
+
+        int[] slots = {card(0x0000), card(0x1111), card(0x2222), card(0x0120)};
+        // swap the first two features and the values 0 and 2 of the last feature
+        int[] permuted = {card(0x0002), card(0x1111), card(0x2220), card(0x1022)};
+
+        assertEquals(cache.canonicalize(slots), cache.canonicalize(permuted));
+    }
+
+    @Test
+    void canonicalize_DifferentLayoutsAreNotEqual() {
+
+        int[] slots = {card(0x0000), card(0x1111), card(0x2222), -1};
+        int[] other = {card(0x0000), card(0x1111), card(0x2221), -1};
+
+        assertNotEquals(cache.canonicalize(slots), cache.canonicalize(other));
+    }
+
+    @Test
+    void setsOf_EquivalentLayoutIsCached() {
+
+        int[] slots = {card(0x0000), -1, card(0x1111), card(0x2222)};
+        int[] permuted = {card(0x2222), -1, card(0x1111), card(0x0000)};
+
+        assertEquals(1, cache.setsOf(slots, util).size());
+        assertEquals(1, cache.setsOf(permuted, util).size());
+        assertEquals(1, cache.hits());
+        assertEquals(true, cache.hasSet(permuted, util));
+        assertEquals(false, cache.hasSet(new int[]{card(0x0000), -1, card(0x1111), card(0x2221)}, util));
+    }
+
+    @Test
+    void hasSet_DeckAndTableTogether() {
+
+        int[] slots = {card(0x0000), -1, card(0x1111), -1};
+
+        assertEquals(0, cache.countSets(slots, util));
+        assertEquals(false, cache.hasSet(Arrays.asList(card(0x2221), card(0x0012)), slots, util));
+        assertEquals(true, cache.hasSet(Arrays.asList(card(0x2221), card(0x2222)), slots, util));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -4,20 +4,27 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 class TableTest {
 
     Table table;
     private Integer[] slotToCard;
     private Integer[] cardToSlot;
+    private Env env;
 
     @BeforeEach
     void setUp() {
@@ -35,7 +42,7 @@ class TableTest {
         slotToCard = new Integer[config.tableSize];
         cardToSlot = new Integer[config.deckSize];
 
-        Env env = new Env(logger, config, new MockUserInterface() , new MockUtil());
+        env = new Env(logger, config, new MockUserInterface() , new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
     }
 
@@ -44,6 +51,7 @@ class TableTest {
         slotToCard[2] = 5;
         cardToSlot[3] = 1;
         cardToSlot[5] = 2;
+        table = new Table(env, slotToCard, cardToSlot);
 
         return 2;
     }
@@ -53,13 +61,37 @@ class TableTest {
             slotToCard[i] = i;
             cardToSlot[i] = i;
         }
+        table = new Table(env, slotToCard, cardToSlot);
     }
 
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, table.cardAt(2));
+        assertEquals(2, env.state.cardSlot(8));
+    }
+
+    @Test
+    void hintService_PublishesToSubscribersWithoutConsoleHints() throws InterruptedException {
+
+        Env env = new Env(this.env.logger, this.env.config, new MockUserInterface(), new UtilImpl(this.env.config));
+        Table table = new Table(env);
+        BlockingQueue<List<int[]>> published = new LinkedBlockingQueue<>();
+        table.hintService().subscribe((version, sets) -> published.add(sets));
+        try {
+            assertEquals(0, published.poll(5, TimeUnit.SECONDS).size());
+            table.placeCard(0, 0);
+            table.placeCard(1, 1);
+            table.placeCard(2, 2);
+            List<int[]> sets;
+            do {
+                sets = published.poll(5, TimeUnit.SECONDS);
+            } while (sets != null && sets.isEmpty());
+            assertNotNull(sets);
+            assertArrayEquals(new int[]{0, 1, 2}, sets.get(0));
+        } finally {
+            table.hintService().terminate();
+        }
     }
 
     @Test
@@ -163,8 +195,9 @@ class TableTest {
         // call the method we are testing
         table.removeCard(0);
 
-        // slotToCard[slot] = null;
-        assertEquals(null, table.slotToCard[0]);
+        // the slot is empty and the card is not on the table:
+        assertEquals(-1, table.cardAt(0));
+        assertEquals(-1, env.state.cardSlot(0));
 
         // removing the players tokens: env.ui.removeTokens(slot);
         // removing the card: env.ui.removeCard(slot);
@@ -179,4 +212,29 @@ class TableTest {
         
         assertEquals(false,result);
     }
+
+    @Test
+    void snapshot_ReflectsPlacedCards() {
+
+        table.placeCard(8, 2);
+        int[] slots = new int[slotToCard.length];
+        long version = table.snapshot(slots);
+
+        assertEquals(8, slots[2]);
+        assertEquals(-1, slots[0]);
+        assertEquals(table.version(), version);
+    }
+
+    @Test
+    void isStale_SlotChangedAfterClaim() {
+
+        table.placeCard(8, 2);
+        long version = table.version();
+        int[] slots = {0, 1, 2};
+        assertEquals(false, table.isStale(slots, version));
+
+        table.removeCard(2);
+        assertEquals(true, table.isStale(slots, version));
+        assertEquals(false, table.isStale(new int[]{0, 1, 3}, version));
+    }
 }